@@ -0,0 +1,34 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import fr.univcotedazur.simpletcfs.interfaces.Bank;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+// Not annotated with @Configuration on purpose: this package is under the one scanned by SimpleTcfsServer, the stub bank
+// must only be used when this class is explicitly given as a source (the load test uses a real bank over HTTP)
+public class BenchmarkConfig {
+
+    // H2 in-memory DB (same setup as the backend tests, a new one for each context), with the schema and indexes of the
+    // Flyway migrations as in production, and no SQL/trace logging on the console, so that JMH measures the business path
+    // and not stdout. Passed as command line arguments to take precedence over persistence.properties
+    public static final String[] BENCHMARK_PROPERTIES = {
+            "--spring.main.banner-mode=off",
+            "--spring.datasource.driver-class-name=org.h2.Driver",
+            "--spring.datasource.url=jdbc:h2:mem:bench-${random.uuid};DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+            "--spring.jpa.hibernate.ddl-auto=none",
+            "--spring.jpa.show-sql=false",
+            "--spring.jpa.properties.hibernate.format_sql=false",
+            "--logging.level.root=WARN",
+            "--logging.level.fr.univcotedazur.simpletcfs=WARN"
+    };
+
+    @Bean
+    @Primary // replaces the BankProxy (which would need the external bank service)
+    public Bank stubBank() {
+        return new StubBank();
+    }
+
+}
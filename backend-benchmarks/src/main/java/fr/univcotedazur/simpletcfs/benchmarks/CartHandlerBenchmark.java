@@ -0,0 +1,65 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
+import fr.univcotedazur.simpletcfs.exceptions.EmptyCartException;
+import fr.univcotedazur.simpletcfs.exceptions.NegativeQuantityException;
+import fr.univcotedazur.simpletcfs.exceptions.PaymentException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CartHandlerBenchmark {
+
+    @Benchmark
+    public Item update(TcfsState state, CustomerCursor cursor) throws NegativeQuantityException, CustomerIdNotFoundException {
+        // adding a cookie already in the cart: the cart keeps its size, only the quantity grows
+        return state.cartModifier.update(cursor.nextCustomer(state), new Item(Cookies.CHOCOLALALA.getId(), 1));
+    }
+
+    @Benchmark
+    public Money cartPrice(TcfsState state, CustomerCursor cursor) throws CustomerIdNotFoundException {
+        return state.cartProcessor.cartPrice(cursor.nextCustomer(state));
+    }
+
+    @Benchmark
+    public Order validate(TcfsState state, FilledCart filledCart) throws PaymentException, EmptyCartException, CustomerIdNotFoundException {
+        return state.cartProcessor.validate(filledCart.customerId);
+    }
+
+    // validate empties the cart, so it is filled again before each call (not measured). Per-invocation setup is
+    // acceptable here as a validation (a transaction with several SQL statements) is much longer than the JMH overhead
+    @State(Scope.Thread)
+    public static class FilledCart {
+
+        Long customerId;
+
+        @Setup(Level.Invocation)
+        public void fill(TcfsState state, CustomerCursor cursor) throws NegativeQuantityException, CustomerIdNotFoundException {
+            customerId = cursor.nextCustomer(state);
+            if (state.cartModifier.cartContent(customerId).isEmpty()) {
+                state.fillCart(customerId);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Pricing loop of CartHandler.cartPriceFromCustomer alone (no Spring context, no DB), on the same cart contents:
+//  - doubleStream: the former version, a stream summing quantity * price as doubles
+//  - centsLoop: the current version, a loop summing quantity * price as long cents (exact, no boxing)
+//  - moneyLoop: the same loop with Money.plus/times, allocating a Money per line unless the JIT eliminates them
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartPricingBenchmark {
+
+    @Benchmark
+    public double doubleStream(Cart cart) {
+        return cart.items.stream()
+                .mapToDouble(item -> item.getQuantity() * cart.doublePrices[item.getRecipeId()])
+                .sum();
+    }
+
+    @Benchmark
+    public Money centsLoop(Cart cart) {
+        long cents = 0;
+        for (Item item : cart.items) {
+            cents = Math.addExact(cents, Math.multiplyExact(cart.moneyPrices[item.getRecipeId()].cents(), item.getQuantity()));
+        }
+        return Money.ofCents(cents);
+    }
+
+    @Benchmark
+    public Money moneyLoop(Cart cart) {
+        Money total = Money.ZERO;
+        for (Item item : cart.items) {
+            total = total.plus(cart.moneyPrices[item.getRecipeId()].times(item.getQuantity()));
+        }
+        return total;
+    }
+
+    @State(Scope.Thread)
+    public static class Cart {
+
+        @Param({"3", "30"}) // number of distinct recipes in the cart
+        int cartSize;
+
+        Set<Item> items;
+
+        double[] doublePrices; // by recipe id, as in the former Cookies enum
+
+        Money[] moneyPrices; // by recipe id, as in the catalog index
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            doublePrices = new double[cartSize];
+            moneyPrices = new Money[cartSize];
+            items = new HashSet<>();
+            for (short id = 0; id < cartSize; id++) {
+                long cents = 100 + random.nextInt(200);
+                moneyPrices[id] = Money.ofCents(cents);
+                doublePrices[id] = cents / 100.0;
+                items.add(new Item(id, 1 + random.nextInt(10)));
+            }
+        }
+
+    }
+
+}
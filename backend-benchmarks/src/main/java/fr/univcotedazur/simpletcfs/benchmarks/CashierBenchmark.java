@@ -0,0 +1,66 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
+import fr.univcotedazur.simpletcfs.exceptions.PaymentException;
+import fr.univcotedazur.simpletcfs.interfaces.CustomerFinder;
+import fr.univcotedazur.simpletcfs.interfaces.Payment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CashierBenchmark {
+
+    @Benchmark
+    public Order payOrderFromCart(TcfsState state, CustomerCursor cursor, CashierState cashier) {
+        Long customerId = cursor.nextCustomer(state);
+        // payOrderFromCart is MANDATORY, it is run inside a transaction that is flushed (the SQL inserts are measured)
+        // and then rolled back, so that the orders table keeps the same size during the benchmark
+        return cashier.transactionTemplate.execute(status -> {
+            try {
+                Order order = cashier.payment.payOrderFromCart(cashier.customerFinder.retrieveCustomer(customerId), cashier.price);
+                state.orderRepository.flush();
+                status.setRollbackOnly();
+                return order;
+            } catch (PaymentException | CustomerIdNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @State(Scope.Benchmark)
+    public static class CashierState {
+
+        Payment payment;
+        CustomerFinder customerFinder;
+        TransactionTemplate transactionTemplate;
+        Money price;
+
+        @Setup(Level.Trial)
+        public void setUp(TcfsState state) throws CustomerIdNotFoundException {
+            payment = state.context.getBean(Payment.class);
+            customerFinder = state.context.getBean(CustomerFinder.class);
+            transactionTemplate = state.context.getBean(TransactionTemplate.class);
+            price = state.cartProcessor.cartPrice(state.customerIds[0]); // all carts have the same contents
+        }
+
+    }
+
+}
@@ -0,0 +1,170 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import fr.univcotedazur.simpletcfs.SimpleTcfsServer;
+import fr.univcotedazur.simpletcfs.exceptions.AlreadyExistingCustomerException;
+import fr.univcotedazur.simpletcfs.interfaces.CustomerRegistration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Closed-loop load test of POST /customers/{id}/cart/validate against the stand-in bank, with the backend run with
+// platform threads then with virtual threads (spring.threads.virtual.enabled). Each client owns a customer and loops
+// on "add a cookie to the cart, validate the cart", so that the best possible throughput of a level is
+// concurrency / bank latency. Options are given as key=value arguments, e.g.
+//     concurrency=10,50,100,200 duration=10 warmup=5 latency=200 modes=platform,virtual
+public class CheckoutLoadTest {
+
+    private static final String ITEM = "{\"cookie\":\"CHOCOLALALA\",\"quantity\":1}";
+
+    private final HttpClient client;
+    private final String baseUrl;
+
+    private CheckoutLoadTest(HttpClient client, String baseUrl) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "concurrency", "10,50,100,200",
+                "duration", "10",
+                "warmup", "5",
+                "latency", "200",
+                "modes", "platform,virtual"));
+        for (String arg : args) {
+            String[] keyValue = arg.split("=", 2);
+            options.put(keyValue[0], keyValue[1]);
+        }
+        int[] levels = Arrays.stream(options.get("concurrency").split(",")).mapToInt(Integer::parseInt).toArray();
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.get("warmup")));
+        Duration latency = Duration.ofMillis(Long.parseLong(options.get("latency")));
+
+        List<String> results = new ArrayList<>();
+        try (StandInBank bank = StandInBank.start(latency);
+             ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientThreads)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            for (String mode : options.get("modes").split(",")) {
+                try (ConfigurableApplicationContext backend = startBackend(bank.baseUrl(), mode)) {
+                    CheckoutLoadTest loadTest = new CheckoutLoadTest(client,
+                            "http://localhost:" + backend.getEnvironment().getProperty("local.server.port"));
+                    Long[] customerIds = registerCustomers(backend, Arrays.stream(levels).max().orElse(0));
+                    loadTest.run(customerIds, levels[0], warmup); // JIT and connection pools warmup, not reported
+                    for (int level : levels) {
+                        Result result = loadTest.run(customerIds, level, duration);
+                        results.add(result.format(mode, level, level * 1000.0 / latency.toMillis()));
+                    }
+                }
+            }
+        }
+        System.out.printf("%nPOST /customers/{id}/cart/validate with a %d ms bank, %d s per level%n", latency.toMillis(), duration.toSeconds());
+        System.out.printf("%-9s %11s %14s %10s %10s %10s %8s%n", "mode", "concurrency", "validations/s", "ideal/s", "p50 (ms)", "p99 (ms)", "errors");
+        results.forEach(System.out::println);
+    }
+
+    private static ConfigurableApplicationContext startBackend(String bankUrl, String mode) {
+        if (!mode.equals("platform") && !mode.equals("virtual"))
+            throw new IllegalArgumentException("Unknown mode " + mode + " (platform or virtual)");
+        String[] properties = Stream.concat(Arrays.stream(BenchmarkConfig.BENCHMARK_PROPERTIES), Stream.of(
+                "--server.port=0",
+                "--bank.host.baseurl=" + bankUrl,
+                "--spring.threads.virtual.enabled=" + mode.equals("virtual"))).toArray(String[]::new);
+        return new SpringApplicationBuilder(SimpleTcfsServer.class).run(properties);
+    }
+
+    private static Long[] registerCustomers(ConfigurableApplicationContext backend, int count) throws AlreadyExistingCustomerException {
+        CustomerRegistration registration = backend.getBean(CustomerRegistration.class);
+        Long[] customerIds = new Long[count];
+        for (int i = 0; i < count; i++) {
+            customerIds[i] = registration.register("load-" + i, "1234896983").getId();
+        }
+        return customerIds;
+    }
+
+    private Result run(Long[] customerIds, int concurrency, Duration duration) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        LongAdder errors = new LongAdder();
+        List<long[]> latencies = new ArrayList<>();
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            long[] clientLatencies = new long[(int) (duration.toMillis() + 1)]; // more than one validation per ms is not expected
+            latencies.add(clientLatencies);
+            Long customerId = customerIds[i];
+            clients.add(Thread.ofVirtual().start(() -> checkoutLoop(customerId, deadline, clientLatencies, errors)));
+        }
+        for (Thread thread : clients) {
+            thread.join();
+        }
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).filter(nanos -> nanos > 0).sorted().toArray();
+        return new Result(all, errors.sum(), duration);
+    }
+
+    private void checkoutLoop(Long customerId, long deadline, long[] latencies, LongAdder errors) {
+        String cartUri = baseUrl + "/customers/" + customerId + "/cart";
+        int validated = 0;
+        while (System.nanoTime() < deadline && validated < latencies.length) {
+            try {
+                if (post(cartUri, ITEM) != 200) {
+                    errors.increment();
+                    continue;
+                }
+                long start = System.nanoTime();
+                if (post(cartUri + "/validate", null) == 200) {
+                    latencies[validated++] = System.nanoTime() - start;
+                } else {
+                    errors.increment();
+                }
+            } catch (IOException e) {
+                errors.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private int post(String uri, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private record Result(long[] sortedLatencies, long errors, Duration duration) {
+
+        String format(String mode, int concurrency, double ideal) {
+            return String.format("%-9s %11d %14.1f %10.1f %10.1f %10.1f %8d", mode, concurrency,
+                    sortedLatencies.length / (double) duration.toSeconds(), ideal,
+                    percentile(0.50), percentile(0.99), errors);
+        }
+
+        private double percentile(double p) {
+            if (sortedLatencies.length == 0)
+                return Double.NaN;
+            return sortedLatencies[(int) Math.ceil(p * sortedLatencies.length) - 1] / 1_000_000.0;
+        }
+
+    }
+
+}
@@ -0,0 +1,188 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univcotedazur.simpletcfs.aspects.ControllerLogger;
+import fr.univcotedazur.simpletcfs.controllers.OrderController;
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
+import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusListener;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+// Cost of the controller aspect on GET /orders (OrderController.listOrders returning a page of orders), no Spring context:
+// the controller is proxied with no aspect, with the former ControllerLogger (INFO logs of the arguments and of the whole
+// result) or with the current one (timer histogram, DEBUG logs of 1% of the calls). The logs are formatted, as an
+// encoder would do, then dropped. Run with -prof gc: gc.alloc.rate.norm gives the bytes allocated per call.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerLoggerBenchmark {
+
+    @Benchmark
+    public ResponseEntity<List<OrderDTO>> listOrders(Controller controller) {
+        return controller.proxy.listOrders(0L, OrderController.MAX_PAGE_SIZE);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Controller {
+
+        @Param({"none", "former", "current"})
+        String aspect;
+
+        @Param({"10", "100"}) // orders in the page
+        int pageSize;
+
+        OrderController proxy;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Customer customer = new Customer("john", "1234567890");
+            List<Order> orders = IntStream.range(0, pageSize)
+                    .mapToObj(i -> new Order(customer, Set.of(new Item(Cookies.CHOCOLALALA.getId(), 1 + i % 5)),
+                            Money.ofCents(125 * (1 + i % 5)), "RECEIPT:" + i))
+                    .toList();
+            AspectJProxyFactory factory = new AspectJProxyFactory(new OrderController(new PageOrderFinder(orders),
+                    new NoStatusTracker(), new ObjectMapper(), 1000));
+            factory.setProxyTargetClass(true);
+            switch (aspect) {
+                case "former" -> factory.addAspect(new FormerControllerLogger());
+                case "current" -> factory.addAspect(new ControllerLogger(new SimpleMeterRegistry(), 0.01, 200));
+                default -> {
+                    // not traced
+                }
+            }
+            proxy = factory.getProxy();
+            formatAndDropLogs(FormerControllerLogger.class, ControllerLogger.class);
+        }
+
+        private static void formatAndDropLogs(Class<?>... loggers) {
+            LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+            FormattingAppender appender = new FormattingAppender();
+            appender.setContext(context);
+            appender.start();
+            for (Class<?> name : loggers) {
+                ch.qos.logback.classic.Logger logger = context.getLogger(name);
+                logger.detachAndStopAllAppenders();
+                logger.addAppender(appender);
+                logger.setAdditive(false);
+                logger.setLevel(ch.qos.logback.classic.Level.DEBUG);
+            }
+        }
+
+    }
+
+    private static final class FormattingAppender extends AppenderBase<ILoggingEvent> {
+        private long characters; // so that the formatting is not eliminated
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            characters += event.getFormattedMessage().length();
+        }
+    }
+
+    private record PageOrderFinder(List<Order> orders) implements OrderFinder {
+        @Override
+        public Optional<Order> findById(Long id) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<Order> findAll() {
+            return orders;
+        }
+
+        @Override
+        public List<OrderDTO> findPage(Long after, int limit) {
+            return orders.stream().map(OrderController::convertOrderToDto).toList();
+        }
+
+        @Override
+        public void forEachOrder(Consumer<OrderDTO> action) {
+            orders.stream().map(OrderController::convertOrderToDto).forEach(action);
+        }
+
+        @Override
+        public List<Order> findByStatus(OrderStatus status) {
+            return orders;
+        }
+
+        @Override
+        public List<OrderDTO> findPageForCustomerWithStatus(Long customerId, OrderStatus status, Long after, int limit) {
+            return orders.stream().map(OrderController::convertOrderToDto).toList();
+        }
+
+        @Override
+        public List<Long> findStaleReservationIds(Instant reservedBefore, int limit) {
+            return List.of();
+        }
+
+        @Override
+        public List<Long> findIdsWithStatus(Collection<Long> orderIds, OrderStatus status) {
+            return List.of();
+        }
+
+        @Override
+        public Order retrieveOrder(Long orderId) {
+            return orders.getFirst();
+        }
+
+        @Override
+        public OrderStatus retrieveOrderStatus(Long orderId) {
+            return OrderStatus.IN_PROGRESS;
+        }
+    }
+
+    private static final class NoStatusTracker implements OrderStatusTracker {
+        @Override
+        public void subscribe(Long orderId, OrderStatusListener listener) {
+        }
+
+        @Override
+        public void unsubscribe(Long orderId, OrderStatusListener listener) {
+        }
+
+        @Override
+        public void subscribeAll(OrderStatusListener listener) {
+        }
+
+        @Override
+        public void unsubscribeAll(OrderStatusListener listener) {
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+// Round-robin over the registered customers, each benchmark thread working on its own subset of customers
+@State(Scope.Thread)
+public class CustomerCursor {
+
+    private int next;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setUp(ThreadParams threadParams) {
+        next = threadParams.getThreadIndex();
+        step = threadParams.getThreadCount();
+    }
+
+    Long nextCustomer(TcfsState state) {
+        Long customerId = state.customerIds[next % state.customerIds.length];
+        next += step;
+        return customerId;
+    }
+
+}
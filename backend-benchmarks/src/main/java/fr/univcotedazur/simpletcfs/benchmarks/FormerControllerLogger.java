@@ -0,0 +1,34 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// The former ControllerLogger of the backend (INFO logs of the arguments and results of every controller call), kept as
+// the baseline of ControllerLoggerBenchmark
+@Aspect
+public class FormerControllerLogger {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FormerControllerLogger.class);
+
+    @Pointcut("execution(public * fr.univcotedazur.simpletcfs.controllers..*(..))")
+    private void allControllerMethods() {
+    }
+
+    @Before("allControllerMethods()")
+    public void logMethodNameAndParametersAtEntry(JoinPoint joinPoint) {
+        LOG.info("TCFS:Rest-Controller: {}:Called {} {}", joinPoint.getThis(), joinPoint.getSignature().getName(), joinPoint.getArgs());
+    }
+
+    @AfterReturning(pointcut = "allControllerMethods()", returning = "resultVal")
+    public void logMethodReturningProperly(JoinPoint joinPoint, Object resultVal) {
+        LOG.info("TCFS:Rest-Controller: {}:Returned {} with value {}", joinPoint.getThis(), joinPoint.getSignature().getName(), resultVal);
+    }
+
+    @AfterThrowing(pointcut = "allControllerMethods()", throwing = "exception")
+    public void logMethodException(JoinPoint joinPoint, Exception exception) {
+        LOG.warn("TCFS:Rest-Controller: {}:Exception from {} with exception {}", joinPoint.getThis(), joinPoint.getSignature().getName(), exception.getMessage());
+    }
+
+}
@@ -0,0 +1,92 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import fr.univcotedazur.simpletcfs.components.KitchenEngine;
+import fr.univcotedazur.simpletcfs.configurations.KitchenProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Open-loop load test of the KitchenEngine alone (no Spring context, no DB): orders of random carts (1 to maxCookies
+// cookies of each of 3 recipes) are submitted at a fixed rate, and the ready orders per minute, the cookies per bake,
+// the lead time percentiles and the queue depth are printed for each number of ovens. Options are given as key=value
+// arguments, e.g.
+//     ovens=1,2,4 rate=20 duration=10 bake=200 capacity=24 maxCookies=6 queue=1000
+public class KitchenLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "ovens", "1,2,4",
+                "rate", "20",
+                "duration", "10",
+                "bake", "200",
+                "capacity", "24",
+                "maxCookies", "6",
+                "queue", "1000"));
+        for (String arg : args) {
+            String[] keyValue = arg.split("=", 2);
+            options.put(keyValue[0], keyValue[1]);
+        }
+        int rate = Integer.parseInt(options.get("rate"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+        Duration bake = Duration.ofMillis(Long.parseLong(options.get("bake")));
+        int maxCookies = Integer.parseInt(options.get("maxCookies"));
+
+        System.out.printf("%n%d orders/s during %d s, %d ms per bake, %s cookies per oven%n", rate, duration.toSeconds(),
+                bake.toMillis(), options.get("capacity"));
+        System.out.printf("%5s %10s %12s %12s %10s %10s %11s %9s%n", "ovens", "submitted", "ready/min", "cookies/bake",
+                "p50 (ms)", "p99 (ms)", "max depth", "rejected");
+        for (int ovens : Arrays.stream(options.get("ovens").split(",")).mapToInt(Integer::parseInt).toArray()) {
+            KitchenProperties properties = new KitchenProperties(ovens, Integer.parseInt(options.get("capacity")),
+                    Integer.parseInt(options.get("queue")), 6, bake, null, Duration.ZERO);
+            Map<Long, Long> submittedAt = new ConcurrentHashMap<>();
+            ConcurrentLinkedQueue<Long> leadTimes = new ConcurrentLinkedQueue<>();
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            KitchenEngine engine = new KitchenEngine(properties, recipe -> bake, orderIds -> {
+                long now = System.nanoTime();
+                orderIds.forEach(id -> leadTimes.add(now - submittedAt.remove(id)));
+            }, meterRegistry);
+            engine.start();
+            long period = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            long orders = duration.toSeconds() * rate;
+            int maxDepth = 0;
+            int rejected = 0;
+            for (long id = 0; id < orders; id++) {
+                long due = start + id * period;
+                while (System.nanoTime() < due) {
+                    Thread.onSpinWait();
+                }
+                Map<Short, Integer> cookies = new HashMap<>();
+                for (short recipe = 1; recipe <= 3; recipe++) {
+                    cookies.put(recipe, ThreadLocalRandom.current().nextInt(1, maxCookies + 1));
+                }
+                submittedAt.put(id, System.nanoTime());
+                if (!engine.submit(id, cookies)) {
+                    submittedAt.remove(id);
+                    rejected++;
+                }
+                maxDepth = Math.max(maxDepth, engine.queueDepth());
+            }
+            engine.stop(); // the orders still queued are not counted
+            double minutes = (System.nanoTime() - start) / 60e9;
+            long[] sorted = leadTimes.stream().mapToLong(Long::longValue).sorted().toArray();
+            var bakeSizes = meterRegistry.get("kitchen.bake.size").summary();
+            System.out.printf("%5d %10d %12.1f %12.1f %10.1f %10.1f %11d %9d%n", ovens, orders, sorted.length / minutes,
+                    bakeSizes.mean(), percentile(sorted, 0.50), percentile(sorted, 0.99), maxDepth, rejected);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return Double.NaN;
+        return sorted[(int) Math.ceil(p * sorted.length) - 1] / 1_000_000.0;
+    }
+
+}
@@ -0,0 +1,131 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import fr.univcotedazur.simpletcfs.SimpleTcfsServer;
+import fr.univcotedazur.simpletcfs.controllers.OrderController;
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
+import fr.univcotedazur.simpletcfs.repositories.CustomerRepository;
+import fr.univcotedazur.simpletcfs.repositories.OrderRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// "My orders in status X" (GET /customers/{customerId}/orders?status=IN_PROGRESS) for a random customer, among orders
+// orders (ordersPerCustomer by customer, in any status): the entity query (findOrdersForCustomerWithStatus, converted to
+// OrderDTO as the controllers do) and the projection (OrderFinder.findPageForCustomerWithStatus, first page), with or
+// without the (customer_id, status, id) index. SampleTime: the p99 is in the percentiles of the output
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class OrderListingBenchmark {
+
+    @Benchmark
+    public List<OrderDTO> entities(OrdersState state) {
+        Long customerId = state.randomCustomer();
+        return state.readOnlyTransaction.execute(status -> state.orderRepository.findOrdersForCustomerWithStatus(
+                        state.customerRepository.getReferenceById(customerId), OrderStatus.IN_PROGRESS, Sort.by("id"))
+                .stream().map(OrderController::convertOrderToDto).toList());
+    }
+
+    @Benchmark
+    public List<OrderDTO> projection(OrdersState state) {
+        return state.orderFinder.findPageForCustomerWithStatus(state.randomCustomer(), OrderStatus.IN_PROGRESS, 0L, 100);
+    }
+
+    @State(Scope.Benchmark)
+    public static class OrdersState {
+
+        @Param({"1000000"}) // 10000000 needs a larger heap (-jvmArgsAppend -Xmx...)
+        public int orders;
+
+        @Param({"10"})
+        public int ordersPerCustomer;
+
+        @Param({"true", "false"})
+        public boolean indexed;
+
+        ConfigurableApplicationContext context;
+        OrderFinder orderFinder;
+        OrderRepository orderRepository;
+        CustomerRepository customerRepository;
+        TransactionTemplate readOnlyTransaction;
+        int customers;
+
+        @Setup(Level.Trial)
+        public void startBackend() {
+            context = new SpringApplicationBuilder(SimpleTcfsServer.class, BenchmarkConfig.class)
+                    .web(WebApplicationType.NONE)
+                    .run(BenchmarkConfig.BENCHMARK_PROPERTIES);
+            orderFinder = context.getBean(OrderFinder.class);
+            orderRepository = context.getBean(OrderRepository.class);
+            customerRepository = context.getBean(CustomerRepository.class);
+            readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            readOnlyTransaction.setReadOnly(true); // as the OrderFinder methods
+            customers = orders / ordersPerCustomer;
+            insertOrders(context.getBean(JdbcTemplate.class));
+        }
+
+        // plain JDBC batches, ids from 1 (the sequences are not used, nothing else is inserted during the benchmark)
+        private void insertOrders(JdbcTemplate jdbcTemplate) {
+            List<Object[]> rows = new ArrayList<>();
+            for (long id = 1; id <= customers; id++) {
+                rows.add(new Object[]{id, "customer-" + id, "1234896983"});
+                if (rows.size() == 10_000 || id == customers) {
+                    jdbcTemplate.batchUpdate("INSERT INTO customer (id, name, credit_card) VALUES (?, ?, ?)", rows);
+                    rows.clear();
+                }
+            }
+            OrderStatus[] statuses = {OrderStatus.VALIDATED, OrderStatus.IN_PROGRESS, OrderStatus.READY};
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (long id = 1; id <= orders; id++) { // the orders of a customer are spread over the table, as over time
+                rows.add(new Object[]{id, random.nextLong(1, customers + 1), 260L, "receipt-" + id, statuses[random.nextInt(statuses.length)].name()});
+                if (rows.size() == 10_000 || id == orders) {
+                    jdbcTemplate.batchUpdate("INSERT INTO orders (id, customer_id, price, pay_receipt_id, status) VALUES (?, ?, ?, ?, ?)", rows);
+                    rows.clear();
+                }
+            }
+            if (!indexed) {
+                // the foreign key needs an index on customer_id, kept as the only one to use for this query
+                jdbcTemplate.execute("CREATE INDEX orders_customer_idx ON orders (customer_id)");
+                jdbcTemplate.execute("DROP INDEX orders_customer_status_id_idx");
+            }
+            jdbcTemplate.execute("ANALYZE");
+        }
+
+        Long randomCustomer() {
+            return ThreadLocalRandom.current().nextLong(1, customers + 1);
+        }
+
+        @TearDown(Level.Trial)
+        public void stopBackend() {
+            context.close();
+        }
+
+    }
+
+}
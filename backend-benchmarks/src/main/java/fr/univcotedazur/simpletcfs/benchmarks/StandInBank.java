@@ -0,0 +1,77 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentReceiptDTO;
+import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentRequestDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTP stand-in for the external bank (same POST /cctransactions and /cctransactions/batch contract as the NestJS one,
+// every payment being accepted) answering after a fixed latency. Each exchange is handled on its own virtual thread,
+// so that the bank itself never limits the concurrency
+public class StandInBank implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Duration latency;
+
+    private StandInBank(Duration latency) throws IOException {
+        this.latency = latency;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/cctransactions", this::pay);
+    }
+
+    public static StandInBank start(Duration latency) throws IOException {
+        StandInBank bank = new StandInBank(latency);
+        bank.server.start();
+        return bank;
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void pay(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            Object receipt;
+            if (exchange.getRequestURI().getPath().endsWith("/batch")) {
+                receipt = Arrays.stream(mapper.readValue(body, PaymentRequestDTO[].class)).map(this::receiptFor).toList();
+            } else {
+                receipt = receiptFor(mapper.readValue(body, PaymentRequestDTO.class));
+            }
+            Thread.sleep(latency); // same latency for a batch as for a single payment
+            byte[] json = mapper.writeValueAsBytes(receipt);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(201, json.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(json);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private PaymentReceiptDTO receiptFor(PaymentRequestDTO request) {
+        return new PaymentReceiptDTO("RECEIPT:" + UUID.randomUUID(), request.amount());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,35 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentRequestDTO;
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.interfaces.Bank;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process Bank accepting every payment, so that benchmarks only measure the backend (no HTTP round-trip)
+public class StubBank implements Bank {
+
+    private final AtomicLong receipts = new AtomicLong();
+
+    @Override
+    public Optional<String> pay(Customer customer, Money value) {
+        return Optional.of("RECEIPT:bench-" + receipts.incrementAndGet());
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> payAsync(Customer customer, Money value) {
+        return CompletableFuture.completedFuture(pay(customer, value));
+    }
+
+    @Override
+    public List<CompletableFuture<Optional<String>>> payAll(List<PaymentRequestDTO> payments) {
+        return payments.stream()
+                .map(payment -> CompletableFuture.completedFuture(Optional.of("RECEIPT:bench-" + receipts.incrementAndGet())))
+                .toList();
+    }
+
+}
@@ -0,0 +1,75 @@
+package fr.univcotedazur.simpletcfs.benchmarks;
+
+import fr.univcotedazur.simpletcfs.SimpleTcfsServer;
+import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.exceptions.AlreadyExistingCustomerException;
+import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
+import fr.univcotedazur.simpletcfs.exceptions.NegativeQuantityException;
+import fr.univcotedazur.simpletcfs.interfaces.CartModifier;
+import fr.univcotedazur.simpletcfs.interfaces.CartProcessor;
+import fr.univcotedazur.simpletcfs.interfaces.CustomerRegistration;
+import fr.univcotedazur.simpletcfs.repositories.OrderRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// One Spring context (H2 + stub bank) per trial, shared by all benchmark threads
+@State(Scope.Benchmark)
+public class TcfsState {
+
+    @Param({"10", "1000"})
+    public int customers;
+
+    @Param({"1", "3"}) // number of distinct cookies in each cart (bounded by the initial recipes)
+    public int cartSize;
+
+    ConfigurableApplicationContext context;
+    CartModifier cartModifier;
+    CartProcessor cartProcessor;
+    OrderRepository orderRepository;
+    Long[] customerIds;
+
+    @Setup(Level.Trial)
+    public void startBackend() throws AlreadyExistingCustomerException, NegativeQuantityException, CustomerIdNotFoundException {
+        if (cartSize > Cookies.values().length)
+            throw new IllegalArgumentException("cartSize cannot exceed the " + Cookies.values().length + " available cookies");
+        context = new SpringApplicationBuilder(SimpleTcfsServer.class, BenchmarkConfig.class)
+                .web(WebApplicationType.NONE)
+                .run(BenchmarkConfig.BENCHMARK_PROPERTIES);
+        cartModifier = context.getBean(CartModifier.class);
+        cartProcessor = context.getBean(CartProcessor.class);
+        orderRepository = context.getBean(OrderRepository.class);
+        CustomerRegistration registration = context.getBean(CustomerRegistration.class);
+        customerIds = new Long[customers];
+        for (int i = 0; i < customers; i++) {
+            customerIds[i] = registration.register("customer-" + i, "1234896983").getId();
+            fillCart(customerIds[i]);
+        }
+    }
+
+    // validated orders are removed between iterations so that the orders table does not grow during the whole trial
+    @TearDown(Level.Iteration)
+    public void removeOrders() {
+        orderRepository.deleteAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopBackend() {
+        context.close();
+    }
+
+    void fillCart(Long customerId) throws NegativeQuantityException, CustomerIdNotFoundException {
+        Cookies[] cookies = Cookies.values();
+        for (int i = 0; i < cartSize; i++) {
+            cartModifier.update(customerId, new Item(cookies[i].getId(), 1));
+        }
+    }
+
+}
@@ -2,10 +2,14 @@ package fr.univcotedazur.simpletcfs;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableAspectJAutoProxy
+@ConfigurationPropertiesScan
+@EnableScheduling
 public class SimpleTcfsServer {
 
     public static void main(String[] args) {
@@ -0,0 +1,106 @@
+package fr.univcotedazur.simpletcfs.aspects;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Times every call of the business interfaces (tcfs.component.calls histogram, by interface, method, outcome and
+// exception), whatever the component implementing them. The asynchronous methods (e.g. Bank.payAsync) are timed until
+// their future is completed. With the controller timers, the bank connection pool and the Hibernate and repository
+// metrics, it tells where the time of a validation goes.
+@Aspect
+@Component
+public class ComponentMetrics {
+
+    public static final String TIMER = "tcfs.component.calls";
+
+    private static final String INTERFACES = "fr.univcotedazur.simpletcfs.interfaces";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Method, Timer> successes = new ConcurrentHashMap<>(); // by implementation method
+
+    @Autowired
+    public ComponentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Pointcut("execution(* fr.univcotedazur.simpletcfs.interfaces.*.*(..))")
+    private void allInterfaceMethods() {
+    }
+
+    @Around("allInterfaceMethods()")
+    public Object timeInterfaceMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Class<?> target = joinPoint.getTarget().getClass();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable exception) {
+            failed(method, target, start, exception);
+            throw exception;
+        }
+        if (result instanceof CompletionStage<?> stage) {
+            stage.whenComplete((value, exception) -> {
+                if (exception != null) {
+                    failed(method, target, start, exception instanceof CompletionException && exception.getCause() != null ?
+                            exception.getCause() : exception);
+                } else {
+                    succeeded(method, target, start);
+                }
+            });
+        } else {
+            succeeded(method, target, start);
+        }
+        return result;
+    }
+
+    private void succeeded(Method method, Class<?> target, long start) {
+        successes.computeIfAbsent(method, m -> timer(m, target, "success", "none"))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void failed(Method method, Class<?> target, long start, Throwable exception) {
+        timer(method, target, "error", exception.getClass().getSimpleName())
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(Method method, Class<?> target, String outcome, String exception) {
+        return Timer.builder(TIMER)
+                .description("Calls of the business interfaces, until the asynchronous results are completed")
+                .tag("interface", interfaceOf(method, target))
+                .tag("method", method.getName())
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // the method may be the one of the component class (class-based proxies), the tag is the interface declaring it
+    private static String interfaceOf(Method method, Class<?> target) {
+        if (method.getDeclaringClass().isInterface())
+            return method.getDeclaringClass().getSimpleName();
+        for (Class<?> candidate : ClassUtils.getAllInterfacesForClassAsSet(target)) {
+            if (candidate.getPackageName().equals(INTERFACES)
+                    && ClassUtils.hasMethod(candidate, method.getName(), method.getParameterTypes()))
+                return candidate.getSimpleName();
+        }
+        return method.getDeclaringClass().getSimpleName();
+    }
+
+}
@@ -1,34 +1,116 @@
 package fr.univcotedazur.simpletcfs.aspects;
 
-import org.aspectj.lang.JoinPoint;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.*;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Times every controller call in a Micrometer histogram (tcfs.controller.calls, by controller, method and exception).
+// Nothing is formatted on the normal path: the arguments and results are only logged (at DEBUG level, truncated) for a
+// sample of the calls, the exceptions are still logged at WARN level.
 @Aspect
 @Component
 public class ControllerLogger {
 
     private static final Logger LOG = LoggerFactory.getLogger(ControllerLogger.class);
 
+    public static final String TIMER = "tcfs.controller.calls";
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    private final double sampleRate; // part of the calls logged at DEBUG level, from 0 to 1
+
+    private final int maxPayloadLength; // characters of each argument and result in the logs
+
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>(); // by controller method, without exception
+
+    @Autowired
+    public ControllerLogger(MeterRegistry meterRegistry,
+                            @Value("${controllers.tracing.sample-rate:0.01}") double sampleRate,
+                            @Value("${controllers.tracing.max-payload-length:200}") int maxPayloadLength) {
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = sampleRate;
+        this.maxPayloadLength = maxPayloadLength;
+    }
+
     @Pointcut("execution(public * fr.univcotedazur.simpletcfs.controllers..*(..))")
     private void allControllerMethods() {
     } // This enables to attach the pointcut to a method name we can reuse below
 
-    @Before("allControllerMethods()")
-    public void logMethodNameAndParametersAtEntry(JoinPoint joinPoint) {
-        LOG.info("TCFS:Rest-Controller: {}:Called {} {}", joinPoint.getThis(), joinPoint.getSignature().getName(), joinPoint.getArgs());
+    @Around("allControllerMethods()")
+    public Object traceControllerMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        boolean sampled = LOG.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        if (sampled)
+            LOG.debug("TCFS:Rest-Controller: Called {}.{} {}", method.getDeclaringClass().getSimpleName(), method.getName(),
+                    truncate(Arrays.toString(joinPoint.getArgs()), maxPayloadLength));
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable exception) {
+            failed(method, start, exception);
+            throw exception;
+        }
+        if (result instanceof CompletionStage<?> stage) { // asynchronous response, timed until it is completed
+            stage.whenComplete((value, exception) -> {
+                if (exception != null) {
+                    failed(method, start, exception instanceof CompletionException && exception.getCause() != null ?
+                            exception.getCause() : exception);
+                } else {
+                    returned(method, start, value, sampled);
+                }
+            });
+        } else {
+            returned(method, start, result, sampled);
+        }
+        return result;
+    }
+
+    private void returned(Method method, long start, Object result, boolean sampled) {
+        timers.computeIfAbsent(method, m -> timer(m, NO_EXCEPTION)).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (sampled)
+            LOG.debug("TCFS:Rest-Controller: Returned {}.{} with value {}", method.getDeclaringClass().getSimpleName(),
+                    method.getName(), truncate(String.valueOf(result), maxPayloadLength));
+    }
+
+    // rare enough for the timer to be looked up in the registry
+    private void failed(Method method, long start, Throwable exception) {
+        timer(method, exception.getClass().getSimpleName()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        LOG.warn("TCFS:Rest-Controller: Exception from {}.{} with exception {}", method.getDeclaringClass().getSimpleName(),
+                method.getName(), exception.getMessage());
     }
 
-    @AfterReturning(pointcut = "allControllerMethods()", returning = "resultVal")
-    public void logMethodReturningProperly(JoinPoint joinPoint, Object resultVal) {
-        LOG.info("TCFS:Rest-Controller: {}:Returned {} with value {}", joinPoint.getThis(), joinPoint.getSignature().getName(), resultVal);
+    private Timer timer(Method method, String exception) {
+        return Timer.builder(TIMER)
+                .description("Controller calls, until the asynchronous responses are completed")
+                .tag("controller", method.getDeclaringClass().getSimpleName())
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
-    @AfterThrowing(pointcut = "allControllerMethods()", throwing = "exception")
-    public void logMethodException(JoinPoint joinPoint, Exception exception) {
-        LOG.warn("TCFS:Rest-Controller: {}:Exception from {} with exception {}", joinPoint.getThis(), joinPoint.getSignature().getName(), exception.getMessage());
+    static String truncate(String payload, int maxLength) {
+        return payload.length() <= maxLength ? payload :
+                payload.substring(0, maxLength) + "... (" + payload.length() + " characters)";
     }
 
 }
@@ -1,91 +1,369 @@
 package fr.univcotedazur.simpletcfs.components;
 
+import fr.univcotedazur.simpletcfs.dto.RecipeDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
 import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
 import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
 import fr.univcotedazur.simpletcfs.exceptions.EmptyCartException;
 import fr.univcotedazur.simpletcfs.exceptions.NegativeQuantityException;
 import fr.univcotedazur.simpletcfs.exceptions.PaymentException;
 import fr.univcotedazur.simpletcfs.interfaces.CartModifier;
 import fr.univcotedazur.simpletcfs.interfaces.CartProcessor;
+import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
 import fr.univcotedazur.simpletcfs.interfaces.CustomerFinder;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
 import fr.univcotedazur.simpletcfs.interfaces.Payment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Optional;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class CartHandler implements CartModifier, CartProcessor {
 
     private static final Logger LOG = LoggerFactory.getLogger(CartHandler.class);
 
+    private static final int RECOVERY_BATCH_SIZE = 100;
+
     private final Payment payment;
 
     private final CustomerFinder customerFinder;
 
+    private final OrderFinder orderFinder;
+
+    private final CatalogExplorator catalog;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Executor executor;
+
+    private final Duration reservationTimeout;
+
     @Autowired
-    public CartHandler(Payment payment, CustomerFinder customerFinder) {
+    public CartHandler(Payment payment, CustomerFinder customerFinder, OrderFinder orderFinder, CatalogExplorator catalog,
+                       TransactionTemplate transactionTemplate,
+                       @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor executor,
+                       @Value("${cart.validation.reservation-timeout:10m}") Duration reservationTimeout) {
         this.payment = payment;
         this.customerFinder = customerFinder;
+        this.orderFinder = orderFinder;
+        this.catalog = catalog;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.reservationTimeout = reservationTimeout;
     }
 
     @Override
     @Transactional
     public Item update(Long customerId, Item item) throws NegativeQuantityException, CustomerIdNotFoundException {
-        Customer customer = customerFinder.retrieveCustomer(customerId);
+        Customer customer = customerFinder.retrieveCustomerWithCart(customerId);
         // some very basic logging (see the AOP way for a more powerful approach, in class ControllerLogger)
-        LOG.info("TCFS:Cart-Component: Updating cart of {} with {}", customer.getName(), item);
-        int newQuantity = item.getQuantity();
-        Set<Item> items = customer.getCart();
-        Optional<Item> existing = items.stream().filter(e -> e.getCookie().equals(item.getCookie())).findFirst();
-        if (existing.isPresent()) {
-            newQuantity += existing.get().getQuantity();
-        }
+        LOG.debug("TCFS:Cart-Component: Updating cart of {} with {}", customer.getName(), item);
+        int newQuantity = customer.getQuantity(item.getRecipeId()) + item.getQuantity();
         if (newQuantity < 0) {
-            throw new NegativeQuantityException(customer.getName(), item.getCookie(), newQuantity);
-        } else {
-            existing.ifPresent(items::remove);
-            if (newQuantity > 0) {
-                items.add(new Item(item.getCookie(), newQuantity));
-            }
+            throw new NegativeQuantityException(customer.getName(), recipeOf(item).name(), newQuantity);
         }
-        return new Item(item.getCookie(), newQuantity);
+        customer.setQuantity(item.getRecipeId(), newQuantity); // only the row of this cookie is written
+        return new Item(item.getRecipeId(), newQuantity);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Set<Item> cartContent(Long customerId) throws CustomerIdNotFoundException {
-        return customerFinder.retrieveCustomer(customerId).getCart();
+        return customerFinder.retrieveCustomerWithCart(customerId).getCart();
     }
 
     @Override
     @Transactional(readOnly = true)
-    public double cartPrice(Long customerId) throws CustomerIdNotFoundException {
-        return cartPriceFromCustomer(customerFinder.retrieveCustomer(customerId));
+    public Money cartPrice(Long customerId) throws CustomerIdNotFoundException {
+        return cartPriceFromCustomer(customerFinder.retrieveCustomerWithCart(customerId));
     }
 
    // private method will be transactional if called from a public transactional method
-   private double cartPriceFromCustomer(Customer customer) {
-        return customer.getCart().stream()
-                .mapToDouble(item -> item.getQuantity() * item.getCookie().getPrice())
-                .sum();
+   private Money cartPriceFromCustomer(Customer customer) {
+        long cents = 0; // exact, with the current prices from the in-memory catalog
+        for (Item item : customer.getCart()) {
+            cents = Math.addExact(cents, Math.multiplyExact(recipeOf(item).price().cents(), item.getQuantity()));
+        }
+        return Money.ofCents(cents);
+    }
+
+    private RecipeDTO recipeOf(Item item) {
+        return catalog.findById(item.getRecipeId())
+                .orElseThrow(() -> new IllegalStateException("Unknown recipe id " + item.getRecipeId()));
     }
 
     @Override
-    @Transactional
     public Order validate(Long customerId) throws PaymentException, EmptyCartException, CustomerIdNotFoundException {
-        Customer customer = customerFinder.retrieveCustomer(customerId);
-        if (customer.getCart().isEmpty())
+        try {
+            return validateAsync(customerId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PaymentException paymentException)
+                throw paymentException;
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException; // e.g. an error from the bank connector
+            throw e;
+        }
+    }
+
+    // Not transactional: the validation is split in two short transactions around the bank call, so that neither
+    // a DB connection nor a transaction is held while waiting for the bank:
+    //  1. the cart is moved into an order PAYMENT_PENDING (the cart is then empty, a concurrent validation fails)
+    //  2. the bank is called asynchronously
+    //  3. the order is confirmed and sent to the kitchen, or cancelled and the cart contents are restored when the bank
+    //     rejected the payment
+    // An order left PAYMENT_PENDING by a failure in step 3, a bank call without answer (timeout, network error: the
+    // payment may have gone through) or a stop of the server is handled by recoverStaleReservations
+    @Override
+    public CompletableFuture<Order> validateAsync(Long customerId) throws EmptyCartException, CustomerIdNotFoundException {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // called within a transaction (nothing can be released): everything is done in it, as a single step
+            try {
+                return CompletableFuture.completedFuture(validateInTransaction(customerId));
+            } catch (PaymentException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        Reservation reservation = reserve(customerId);
+        return payment.payReservedOrder(reservation.order())
+                .handleAsync((payReceiptId, error) -> { // not run on the HTTP client threads, as it uses the DB
+                    if (error != null) {
+                        if (isRejection(error))
+                            cancelAfterPaymentFailure(customerId, reservation, error);
+                        else
+                            LOG.warn("TCFS:Cart-Component: No answer from the bank for the reserved order {}, left to the recovery",
+                                    reservation.order().getId(), error);
+                        throw error instanceof CompletionException completionException ? completionException : new CompletionException(error);
+                    }
+                    return confirm(reservation.order().getId(), payReceiptId);
+                }, executor);
+    }
+
+    // Same three steps as validateAsync, each one being grouped for all the carts:
+    //  1. a single transaction, with one query for all customers, the reserved orders being inserted as JDBC batches
+    //  2. all the payments sent together to the bank (Bank.payAll)
+    //  3. a single transaction confirming the paid orders and restoring the carts of the rejected ones (the ones without
+    //     answer from the bank are left to recoverStaleReservations)
+    @Override
+    public Map<Long, CompletableFuture<Order>> validateAll(List<Long> customerIds) {
+        Map<Long, CompletableFuture<Order>> results = new LinkedHashMap<>();
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            customerIds.forEach(customerId -> results.computeIfAbsent(customerId, this::validateAsyncOrFail));
+            return results;
+        }
+        customerIds.forEach(customerId -> results.putIfAbsent(customerId, new CompletableFuture<>()));
+        Map<Long, Reservation> reservations = reserveAll(results);
+        List<Long> reservedCustomerIds = List.copyOf(reservations.keySet());
+        List<CompletableFuture<String>> paid = payment.payReservedOrders(reservedCustomerIds.stream().map(customerId -> reservations.get(customerId).order()).toList());
+        Map<Long, CompletableFuture<String>> payments = new HashMap<>();
+        for (int i = 0; i < reservedCustomerIds.size(); i++) {
+            payments.put(reservedCustomerIds.get(i), paid.get(i));
+        }
+        CompletableFuture.allOf(payments.values().toArray(CompletableFuture[]::new))
+                .whenCompleteAsync((ignored, error) -> settleAll(reservations, payments, results), executor);
+        return results;
+    }
+
+    private CompletableFuture<Order> validateAsyncOrFail(Long customerId) {
+        try {
+            return validateAsync(customerId);
+        } catch (EmptyCartException | CustomerIdNotFoundException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Order validateInTransaction(Long customerId) throws PaymentException, EmptyCartException, CustomerIdNotFoundException {
+        Customer customer = customerFinder.retrieveCustomerWithCart(customerId);
+        if (customer.isCartEmpty())
             throw new EmptyCartException(customer.getName());
         Order newOrder = payment.payOrderFromCart(customer, cartPriceFromCustomer(customer));
         customer.clearCart();
         return newOrder;
     }
 
+    private Reservation reserve(Long customerId) throws EmptyCartException, CustomerIdNotFoundException {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    Customer customer = customerFinder.retrieveCustomerWithCart(customerId);
+                    if (customer.isCartEmpty())
+                        throw new EmptyCartException(customer.getName());
+                    Set<Item> items = customer.getCart();
+                    Order reserved = payment.reserveOrderFromCart(customer, cartPriceFromCustomer(customer));
+                    customer.clearCart();
+                    return new Reservation(reserved, items);
+                } catch (EmptyCartException | CustomerIdNotFoundException e) {
+                    throw new CompletionException(e); // checked exceptions cannot cross the callback (rollback, then rethrown)
+                }
+            });
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof EmptyCartException emptyCartException)
+                throw emptyCartException;
+            throw (CustomerIdNotFoundException) e.getCause();
+        }
+    }
+
+    // the failures (unknown customer, empty cart) complete their result directly
+    private Map<Long, Reservation> reserveAll(Map<Long, CompletableFuture<Order>> results) {
+        Map<Long, Reservation> reservations = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Customer> customers = customerFinder.findAllWithCartById(results.keySet()).stream()
+                    .collect(Collectors.toMap(Customer::getId, Function.identity()));
+            results.forEach((customerId, result) -> {
+                Customer customer = customers.get(customerId);
+                if (customer == null) {
+                    result.completeExceptionally(new CustomerIdNotFoundException(customerId));
+                } else if (customer.isCartEmpty()) {
+                    result.completeExceptionally(new EmptyCartException(customer.getName()));
+                } else {
+                    Set<Item> items = customer.getCart();
+                    reservations.put(customerId, new Reservation(payment.reserveOrderFromCart(customer, cartPriceFromCustomer(customer)), items));
+                    customer.clearCart();
+                }
+            });
+        });
+        return reservations;
+    }
+
+    // run once all payments are completed, the results are only completed after the commit
+    private void settleAll(Map<Long, Reservation> reservations, Map<Long, CompletableFuture<String>> payments,
+                           Map<Long, CompletableFuture<Order>> results) {
+        Map<Long, String> receipts = new HashMap<>(); // by order id
+        Map<Long, Reservation> rejected = new HashMap<>(); // by customer id
+        List<Long> unanswered = new ArrayList<>(); // by customer id, the bank may have paid them
+        reservations.forEach((customerId, reservation) -> {
+            CompletableFuture<String> paid = payments.get(customerId);
+            if (!paid.isCompletedExceptionally())
+                receipts.put(reservation.order().getId(), paid.join());
+            else if (isRejection(paid.exceptionNow()))
+                rejected.put(customerId, reservation);
+            else
+                unanswered.add(customerId);
+        });
+        if (!unanswered.isEmpty())
+            LOG.warn("TCFS:Cart-Component: No answer from the bank for the reserved orders of the customers {}, left to the recovery", unanswered);
+        unanswered.forEach(customerId -> results.get(customerId).completeExceptionally(payments.get(customerId).exceptionNow()));
+        try {
+            List<Order> confirmed = transactionTemplate.execute(status -> {
+                rejected.forEach(this::cancelInTransaction);
+                return receipts.isEmpty() ? List.<Order>of() : payment.confirmReservedOrders(receipts);
+            });
+            confirmed.forEach(order -> results.get(order.getCustomer().getId()).complete(order));
+            rejected.keySet().forEach(customerId -> results.get(customerId).completeExceptionally(payments.get(customerId).exceptionNow()));
+        } catch (RuntimeException e) {
+            if (!receipts.isEmpty())
+                recordPayments(receipts, e); // the rejected ones are left to recoverStaleReservations
+            reservations.keySet().forEach(customerId -> results.get(customerId).completeExceptionally(e));
+        }
+    }
+
+    // the payment went through: when the confirmation fails, the receipt is kept on the reserved order, which is then
+    // confirmed by recoverStaleReservations (the failure is still returned to the caller)
+    private Order confirm(Long orderId, String payReceiptId) {
+        try {
+            return transactionTemplate.execute(status -> payment.confirmReservedOrder(orderId, payReceiptId));
+        } catch (RuntimeException e) {
+            recordPayments(Map.of(orderId, payReceiptId), e);
+            throw e;
+        }
+    }
+
+    private void recordPayments(Map<Long, String> payReceiptIdsByOrderId, RuntimeException confirmationFailure) {
+        try {
+            List<Order> recorded = transactionTemplate.execute(status -> payment.recordReservedOrderPayments(payReceiptIdsByOrderId));
+            LOG.warn("TCFS:Cart-Component: Confirmation of the paid orders {} failed, left to the recovery", payReceiptIdsByOrderId.keySet(), confirmationFailure);
+            if (recorded.size() < payReceiptIdsByOrderId.size()) // e.g. already cancelled by the recovery
+                LOG.error("TCFS:Cart-Component: Payments {} of orders no longer reserved, to reconcile with the bank", payReceiptIdsByOrderId);
+        } catch (RuntimeException e) {
+            confirmationFailure.addSuppressed(e);
+            LOG.error("TCFS:Cart-Component: Payments {} could not be recorded, to reconcile with the bank", payReceiptIdsByOrderId, confirmationFailure);
+        }
+    }
+
+    // an explicit refusal of the bank (PaymentException), unlike a call that failed without answer
+    private static boolean isRejection(Throwable paymentFailure) {
+        Throwable cause = paymentFailure instanceof CompletionException && paymentFailure.getCause() != null ? paymentFailure.getCause() : paymentFailure;
+        return cause instanceof PaymentException;
+    }
+
+    // a failed cancellation must not replace the payment error: the reservation is then left to recoverStaleReservations
+    private void cancelAfterPaymentFailure(Long customerId, Reservation reservation, Throwable paymentFailure) {
+        try {
+            cancel(customerId, reservation);
+        } catch (RuntimeException e) {
+            Throwable cause = paymentFailure instanceof CompletionException && paymentFailure.getCause() != null ? paymentFailure.getCause() : paymentFailure;
+            cause.addSuppressed(e);
+            LOG.warn("TCFS:Cart-Component: Cancellation of the reserved order {} failed, left to the recovery", reservation.order().getId(), e);
+        }
+    }
+
+    private void cancel(Long customerId, Reservation reservation) {
+        transactionTemplate.executeWithoutResult(status -> cancelInTransaction(customerId, reservation));
+    }
+
+    // Orders left PAYMENT_PENDING by an interrupted validation, each one in its own transaction: the paid ones (receipt
+    // kept by recordPayments) are confirmed again; the ones reserved more than reservation-timeout ago (well beyond the
+    // bank timeouts) without any answer are cancelled and their cart restored. As the bank cannot be asked whether such
+    // a payment went through (e.g. server stopped while waiting for it), they are logged to be reconciled with the bank
+    @Scheduled(fixedDelayString = "${cart.validation.recovery.interval-ms:60000}")
+    public void recoverStaleReservations() {
+        for (Long orderId : orderFinder.findStaleReservationIds(Instant.now().minus(reservationTimeout), RECOVERY_BATCH_SIZE)) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> recover(orderId));
+            } catch (RuntimeException e) {
+                LOG.warn("TCFS:Cart-Component: Recovery of the reserved order {} failed, retried later", orderId, e);
+            }
+        }
+    }
+
+    private void recover(Long orderId) {
+        orderFinder.findById(orderId)
+                .filter(order -> order.getStatus() == OrderStatus.PAYMENT_PENDING) // not settled in the meantime
+                .ifPresent(order -> {
+                    if (order.getPayReceiptId() != null) {
+                        payment.confirmReservedOrder(orderId, order.getPayReceiptId());
+                        LOG.info("TCFS:Cart-Component: Paid order {} confirmed by the recovery", orderId);
+                    } else {
+                        cancelInTransaction(order.getCustomer().getId(), new Reservation(order, new HashSet<>(order.getItems())));
+                        LOG.warn("TCFS:Cart-Component: Reserved order {} of {} ({}) cancelled without bank answer since {}, to reconcile with the bank",
+                                orderId, order.getCustomer().getName(), order.getPrice(), order.getReservedAt());
+                    }
+                });
+    }
+
+    private void cancelInTransaction(Long customerId, Reservation reservation) {
+        payment.cancelReservedOrder(reservation.order().getId());
+        customerFinder.findWithCartById(customerId).ifPresent(customer -> reservation.items().forEach(item ->
+            // the customer may have added cookies to the cart in the meantime
+            customer.setQuantity(item.getRecipeId(), customer.getQuantity(item.getRecipeId()) + item.getQuantity())));
+    }
+
+    private record Reservation(Order order, Set<Item> items) {
+    }
+
 }
@@ -1,17 +1,28 @@
 package fr.univcotedazur.simpletcfs.components;
 
+import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentRequestDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.entities.Order;
 import fr.univcotedazur.simpletcfs.exceptions.PaymentException;
 import fr.univcotedazur.simpletcfs.interfaces.Bank;
 import fr.univcotedazur.simpletcfs.interfaces.OrderCooking;
 import fr.univcotedazur.simpletcfs.interfaces.OrderCreator;
+import fr.univcotedazur.simpletcfs.interfaces.OrderEventPublisher;
+import fr.univcotedazur.simpletcfs.interfaces.OrderModifier;
 import fr.univcotedazur.simpletcfs.interfaces.Payment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
 @Component
 public class Cashier implements Payment {
 
@@ -19,21 +30,85 @@ public class Cashier implements Payment {
 
     private final OrderCreator orderer;
 
+    private final OrderModifier orderModifier;
+
     private final OrderCooking kitchen;
 
+    private final OrderEventPublisher orderEvents;
+
     @Autowired
-    public Cashier(Bank bank, OrderCreator orderer, OrderCooking orderCooking) {
+    public Cashier(Bank bank, OrderCreator orderer, OrderModifier orderModifier, OrderCooking orderCooking,
+                   OrderEventPublisher orderEventPublisher) {
         this.bank = bank;
         this.orderer = orderer;
+        this.orderModifier = orderModifier;
         this.kitchen = orderCooking;
+        this.orderEvents = orderEventPublisher;
     }
 
     @Override
     @Transactional(propagation = Propagation.MANDATORY)
-    public Order payOrderFromCart(Customer customer, double price) throws PaymentException {
+    public Order payOrderFromCart(Customer customer, Money price) throws PaymentException {
         String paymentReceiptId  = bank.pay(customer, price).orElseThrow(() -> new PaymentException(customer.getName(), price));
         Order order = orderer.createOrder(customer, price, paymentReceiptId);
+        return paid(order);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Order reserveOrderFromCart(Customer customer, Money price) {
+        return orderer.reserveOrder(customer, price);
+    }
+
+    @Override
+    public CompletableFuture<String> payReservedOrder(Order reservedOrder) {
+        // not transactional on purpose: no DB connection is held while waiting for the bank
+        Customer customer = reservedOrder.getCustomer();
+        Money price = reservedOrder.getPrice();
+        return bank.payAsync(customer, price)
+                .thenApply(receipt -> receipt.orElseThrow(() -> new CompletionException(new PaymentException(customer.getName(), price))));
+    }
+
+    @Override
+    public List<CompletableFuture<String>> payReservedOrders(List<Order> reservedOrders) {
+        // not transactional either, all the payments are sent together to the bank
+        List<CompletableFuture<Optional<String>>> receipts = bank.payAll(reservedOrders.stream()
+                .map(order -> new PaymentRequestDTO(order.getCustomer().getCreditCard(), order.getPrice()))
+                .toList());
+        return IntStream.range(0, reservedOrders.size())
+                .mapToObj(i -> receipts.get(i).thenApply(receipt -> receipt.orElseThrow(() ->
+                        new CompletionException(new PaymentException(reservedOrders.get(i).getCustomer().getName(), reservedOrders.get(i).getPrice())))))
+                .toList();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Order confirmReservedOrder(Long orderId, String payReceiptId) {
+        return paid(orderModifier.orderIsPaid(orderId, payReceiptId));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Order> confirmReservedOrders(Map<Long, String> payReceiptIdsByOrderId) {
+        return orderModifier.ordersArePaid(payReceiptIdsByOrderId).stream().map(this::paid).toList();
+    }
+
+    // the side effects of the paid order (e.g. baking it) are triggered by its event, delivered once committed
+    private Order paid(Order order) {
+        orderEvents.orderCreated(order);
         return kitchen.processInKitchen(order);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void cancelReservedOrder(Long orderId) {
+        orderer.cancelReservedOrder(orderId);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Order> recordReservedOrderPayments(Map<Long, String> payReceiptIdsByOrderId) {
+        return orderModifier.paymentsReceived(payReceiptIdsByOrderId);
+    }
+
 }
@@ -1,27 +1,195 @@
 package fr.univcotedazur.simpletcfs.components;
 
+import fr.univcotedazur.simpletcfs.dto.RecipeDTO;
 import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.Recipe;
+import fr.univcotedazur.simpletcfs.exceptions.InvalidSearchPatternException;
+import fr.univcotedazur.simpletcfs.exceptions.UnknownRecipeException;
 import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
+import fr.univcotedazur.simpletcfs.interfaces.CatalogModifier;
+import fr.univcotedazur.simpletcfs.repositories.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.EnumSet;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
 
+// The recipes are stored in the DB, and read from an in-memory index loaded at startup: the reads (on each cart update
+// and price computation) neither lock nor hit the DB, the (rare) changes write the DB then swap the index. The index is
+// reloaded periodically, for the recipes written in the DB by other means (e.g. another instance)
 @Service
-public class Catalog implements CatalogExplorator {
+public class Catalog implements CatalogExplorator, CatalogModifier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Catalog.class);
+
+    public static final int MAX_PATTERN_LENGTH = 256;
+
+    public static final Duration MATCH_TIMEOUT = Duration.ofMillis(50); // for all the cookies of a search
+
+    private final RecipeRepository recipeRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration searchRejectionTtl; // a pattern that took too long is rejected at once during this time
+
+    private volatile RecipeIndex index; // immutable, replaced by the writers (serialized by the lock of this Catalog)
+
+    @Autowired
+    public Catalog(RecipeRepository recipeRepository, TransactionTemplate transactionTemplate,
+                   @Value("${catalog.search.rejection-ttl:10s}") Duration searchRejectionTtl) {
+        this.recipeRepository = recipeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.searchRejectionTtl = searchRejectionTtl;
+        this.index = RecipeIndex.of(transactionTemplate.execute(status -> {
+            if (recipeRepository.count() == 0) { // first start: the initial recipes
+                LOG.info("TCFS:Catalog: Creating the initial recipes");
+                recipeRepository.saveAll(Arrays.stream(Cookies.values()).map(Cookies::toRecipe).toList());
+            }
+            return findAllRecipes();
+        }), searchRejectionTtl);
+    }
+
+    @Override
+    public Set<String> listPreMadeRecipes() {
+        return index.names();
+    }
+
+    @Override
+    public Optional<RecipeDTO> findById(short id) {
+        return index.findById(id);
+    }
+
+    @Override
+    public Optional<RecipeDTO> findByName(String name) {
+        return index.findByName(name);
+    }
+
+    @Override
+    public List<RecipeDTO> findByNamePrefix(String prefix) {
+        return index.findByNamePrefix(prefix);
+    }
 
     @Override
-    @Transactional(readOnly = true)
-    public Set<Cookies> listPreMadeRecipes() {
-        return EnumSet.allOf(Cookies.class);
+    public List<RecipeDTO> findByPriceRange(Money minPrice, Money maxPrice) {
+        return index.findByPriceRange(minPrice, maxPrice);
     }
 
     @Override
-    @Transactional(readOnly = true)
-    public Set<Cookies> exploreCatalogue(String regexp) {
-        return EnumSet.allOf(Cookies.class).stream().filter(cookie -> cookie.name().matches(regexp)).collect(Collectors.toSet());
+    public synchronized RecipeDTO updatePrice(String name, Money price) throws UnknownRecipeException {
+        if (!price.isPositive())
+            throw new IllegalArgumentException("Price should be positive: " + price);
+        try {
+            RecipeDTO updated = transactionTemplate.execute(status -> {
+                Recipe recipe = recipeRepository.findRecipeByName(name)
+                        .orElseThrow(() -> new CompletionException(new UnknownRecipeException(name)));
+                recipe.setPrice(price);
+                return convertRecipeToDto(recipe);
+            });
+            index = index.with(updated); // published once committed
+            LOG.info("TCFS:Catalog: Price of {} updated to {}", name, price);
+            return updated;
+        } catch (CompletionException e) { // checked exceptions cannot cross the callback (rollback, then rethrown)
+            throw (UnknownRecipeException) e.getCause();
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${catalog.reload.interval-ms:60000}", initialDelayString = "${catalog.reload.interval-ms:60000}")
+    public synchronized void reload() {
+        List<RecipeDTO> recipes = transactionTemplate.execute(status -> findAllRecipes());
+        if (Set.copyOf(recipes).equals(Set.copyOf(index.recipes())))
+            return; // unchanged: the index, and the results already returned from it, are kept
+        index = index.reloaded(recipes, searchRejectionTtl);
+        LOG.info("TCFS:Catalog: {} recipes reloaded", recipes.size());
+    }
+
+    private List<RecipeDTO> findAllRecipes() {
+        return recipeRepository.findAll().stream().map(Catalog::convertRecipeToDto).toList();
+    }
+
+    @Override
+    public Set<String> exploreCatalogue(String regexp) {
+        if (regexp.length() > MAX_PATTERN_LENGTH)
+            throw new InvalidSearchPatternException("Search pattern longer than " + MAX_PATTERN_LENGTH + " characters");
+        RecipeIndex current = index;
+        Set<String> result = current.searches().getIfPresent(regexp);
+        if (result != null)
+            return result;
+        if (current.rejectedSearches().getIfPresent(regexp) != null)
+            throw new InvalidSearchPatternException("Search pattern too complex: " + regexp);
+        // computed outside the lock, concurrent first searches of a pattern may both compute it
+        Optional<Set<String>> found = search(regexp, current.names());
+        if (found.isEmpty()) { // not cached as a result: evaluated again once the rejection has expired
+            current.rejectedSearches().put(regexp, Boolean.TRUE);
+            throw new InvalidSearchPatternException("Search pattern too complex: " + regexp);
+        }
+        current.searches().put(regexp, found.get());
+        return found.get();
+    }
+
+    private static Optional<Set<String>> search(String regexp, Set<String> names) {
+        Pattern pattern = Pattern.compile(regexp); // PatternSyntaxException (an IllegalArgumentException) if invalid
+        long deadline = System.nanoTime() + MATCH_TIMEOUT.toNanos();
+        Set<String> found = new LinkedHashSet<>();
+        try {
+            for (String name : names) {
+                if (pattern.matcher(new DeadlineCharSequence(name, deadline)).matches())
+                    found.add(name);
+            }
+        } catch (MatchTimeoutException e) {
+            return Optional.empty();
+        }
+        return Optional.of(Collections.unmodifiableSet(found));
+    }
+
+    private static RecipeDTO convertRecipeToDto(Recipe recipe) {
+        return new RecipeDTO(recipe.getId(), recipe.getName(), recipe.getLabel(), recipe.getPrice());
+    }
+
+    // The regex engine reads the input through charAt, which is called at each backtracking step: checking the deadline
+    // there bounds the time of a catastrophic backtracking (ReDoS) on a hostile pattern
+    private record DeadlineCharSequence(String text, long deadline) implements CharSequence {
+
+        @Override
+        public char charAt(int index) {
+            if (System.nanoTime() > deadline)
+                throw new MatchTimeoutException();
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new DeadlineCharSequence(text.substring(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static class MatchTimeoutException extends RuntimeException {
+        MatchTimeoutException() {
+            super(null, null, false, false); // no stack trace, only used as a signal
+        }
     }
 
 }
@@ -1,26 +1,41 @@
 package fr.univcotedazur.simpletcfs.components;
 
+import fr.univcotedazur.simpletcfs.dto.CustomerDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
 import fr.univcotedazur.simpletcfs.exceptions.AlreadyExistingCustomerException;
 import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
 import fr.univcotedazur.simpletcfs.interfaces.CustomerFinder;
 import fr.univcotedazur.simpletcfs.interfaces.CustomerRegistration;
 import fr.univcotedazur.simpletcfs.repositories.CustomerRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class CustomerRegistry implements CustomerRegistration, CustomerFinder {
 
     private final CustomerRepository customerRepository;
 
+    private final EntityManager entityManager;
+
+    private final boolean secondLevelCache;
+
     @Autowired // annotation is optional since Spring 4.3 if component has only one constructor
-    public CustomerRegistry(CustomerRepository customerRepository) {
+    public CustomerRegistry(CustomerRepository customerRepository, EntityManager entityManager) {
         this.customerRepository = customerRepository;
+        this.entityManager = entityManager;
+        this.secondLevelCache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class)
+                .getSessionFactoryOptions().isSecondLevelCacheEnabled();
     }
 
     @Override
@@ -36,7 +51,8 @@ public class CustomerRegistry implements CustomerRegistration, CustomerFinder {
     @Override
     @Transactional(readOnly = true)
     public Optional<Customer> findByName(String name) {
-        return customerRepository.findCustomerByName(name);
+        // by natural id, so that the id is read from the natural-id cache (then the customer from its cache) when enabled
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Customer.class).loadOptional(name);
     }
 
     @Override
@@ -51,10 +67,44 @@ public class CustomerRegistry implements CustomerRegistration, CustomerFinder {
         return findById(customerId).orElseThrow(() -> new CustomerIdNotFoundException(customerId));
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Customer retrieveCustomerWithCart(Long customerId) throws CustomerIdNotFoundException {
+        return findWithCartById(customerId).orElseThrow(() -> new CustomerIdNotFoundException(customerId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Customer> findWithCartById(Long id) {
+        // a query always reads the DB: with the second-level cache, the customer is found by id then its cart lazily
+        // loaded, both being read from the cache when they are in it
+        return secondLevelCache ? customerRepository.findById(id) : customerRepository.findWithCartById(id);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<Customer> findAll() {
         return customerRepository.findAll();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> findAllWithCartById(Collection<Long> ids) {
+        return customerRepository.findAllWithCartByIdIn(ids); // ids not found are just missing in the result
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CustomerDTO> findPage(Long after, int limit) {
+        return customerRepository.findCustomerDTOsAfter(after, Limit.of(limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachCustomer(Consumer<CustomerDTO> action) {
+        try (Stream<CustomerDTO> customers = customerRepository.streamAllCustomerDTOs()) {
+            customers.forEach(action);
+        }
+    }
+
 }
@@ -1,29 +1,145 @@
 package fr.univcotedazur.simpletcfs.components;
 
+import fr.univcotedazur.simpletcfs.configurations.KitchenProperties;
+import fr.univcotedazur.simpletcfs.dto.OrderCreatedEvent;
+import fr.univcotedazur.simpletcfs.entities.Item;
 import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
 import fr.univcotedazur.simpletcfs.interfaces.OrderCooking;
+import fr.univcotedazur.simpletcfs.interfaces.OrderEventConsumer;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
 import fr.univcotedazur.simpletcfs.interfaces.OrderModifier;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+// An order sent to the kitchen is in progress, and queued in the KitchenEngine when its ORDER_CREATED event is delivered
+// by the Outbox (after the commit). The engine bakes it in the background, then marks it as ready. The queue is in memory
+// only: the orders still in progress when the kitchen starts (e.g. after a crash) are queued again.
 @Component
-public class Kitchen implements OrderCooking {
+public class Kitchen implements OrderCooking, OrderEventConsumer, SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Kitchen.class);
 
     private final OrderModifier orderer;
 
+    private final OrderFinder orderFinder;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final KitchenEngine engine;
+
+    private volatile boolean running;
+
     @Autowired
-    public Kitchen(OrderModifier orderModifier) {
+    public Kitchen(OrderModifier orderModifier, OrderFinder orderFinder, CatalogExplorator catalog,
+                   TransactionTemplate transactionTemplate, KitchenProperties properties, MeterRegistry meterRegistry) {
         this.orderer = orderModifier;
+        this.orderFinder = orderFinder;
+        this.transactionTemplate = transactionTemplate;
+        this.engine = new KitchenEngine(properties,
+                recipeId -> catalog.findById(recipeId).map(recipe -> properties.bakeTimeOf(recipe.name())).orElse(properties.bakeTime()),
+                this::ordersAreReady, meterRegistry);
     }
 
     @Override
     @Transactional(propagation = Propagation.MANDATORY) // must be called within a transaction
     public Order processInKitchen(Order order) {
-        // MVP no business logic in the kitchen (could be the order display for chefs)
         return orderer.orderIsNowInProgress(order);
     }
 
+    @Override
+    public Set<Long> ordersCreated(List<OrderCreatedEvent> events) {
+        if (events.isEmpty())
+            return Set.of();
+        // at-least-once delivery: an event delivered again once its order is baked (READY) must not bake it again, only
+        // the orders still in progress are queued (and the engine ignores the ones already queued)
+        Set<Long> inProgress = new HashSet<>(transactionTemplate.execute(status -> orderFinder.findIdsWithStatus(
+                events.stream().map(OrderCreatedEvent::orderId).toList(), OrderStatus.IN_PROGRESS)));
+        // the relay is not blocked by a full queue: the events from the first order that does not fit are returned, to be
+        // delivered again later
+        Set<Long> notQueued = new HashSet<>();
+        for (OrderCreatedEvent event : events) {
+            if (!inProgress.contains(event.orderId())) {
+                LOG.debug("TCFS:Kitchen: Order {} no longer in progress, its event is ignored", event.orderId());
+                continue;
+            }
+            if (!notQueued.isEmpty() || !offer(event.orderId(), event.cookies()))
+                notQueued.add(event.orderId());
+        }
+        if (!notQueued.isEmpty())
+            LOG.debug("TCFS:Kitchen: Queue full, orders {} to be delivered again", notQueued);
+        return notQueued;
+    }
+
+    private boolean offer(long orderId, Map<Short, Integer> cookies) {
+        try {
+            return engine.offer(orderId, cookies);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean queue(long orderId, Map<Short, Integer> cookies) {
+        try {
+            return engine.submit(orderId, cookies);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void ordersAreReady(List<Long> orderIds) {
+        transactionTemplate.executeWithoutResult(status -> orderer.ordersAreReady(orderIds));
+    }
+
+    private static Map<Short, Integer> cookiesOf(Order order) {
+        return order.getItems().stream().collect(Collectors.toMap(Item::getRecipeId, Item::getQuantity, Integer::sum));
+    }
+
+    @Override
+    public void start() {
+        Map<Long, Map<Short, Integer>> inProgress = transactionTemplate.execute(status -> orderFinder.findByStatus(OrderStatus.IN_PROGRESS).stream()
+                .collect(Collectors.toMap(Order::getId, Kitchen::cookiesOf, (first, second) -> first, LinkedHashMap::new)));
+        engine.start();
+        if (!inProgress.isEmpty())
+            LOG.info("TCFS:Kitchen: Queuing again {} orders in progress", inProgress.size());
+        inProgress.forEach((orderId, cookies) -> {
+            if (!queue(orderId, cookies))
+                LOG.warn("TCFS:Kitchen: Queue full, order {} stays in progress until the next start", orderId);
+        });
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        engine.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() { // started before the web server accepts orders, stopped after it
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
 }
@@ -0,0 +1,328 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import fr.univcotedazur.simpletcfs.configurations.KitchenProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// The kitchen work queue, with neither Spring nor DB so that it can be load tested in-process. An order is split by recipe
+// into portions waiting in one line per recipe. An idle oven takes the recipe of the most urgent portion (express orders
+// first, then the oldest one) and fills itself with this recipe from all the waiting orders, so that the identical cookies
+// of several orders are baked together. An order is ready when all its portions are baked.
+public class KitchenEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KitchenEngine.class);
+
+    private final KitchenProperties properties;
+
+    private final Function<Short, Duration> bakeTime; // by recipe id
+
+    private final Consumer<List<Long>> onReady; // called by the oven threads with the ids of the ready orders
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition workToDo = lock.newCondition();
+
+    private final Condition roomInQueue = lock.newCondition();
+
+    private final Map<Short, RecipeLine> lines = new HashMap<>(); // guarded by lock
+
+    private long nextSequence; // guarded by lock
+
+    private final Map<Long, Ticket> queued = new HashMap<>(); // guarded by lock, by order id, submitted and not ready yet
+
+    private int waitingCookies; // guarded by lock, not in an oven yet
+
+    private final AtomicInteger busyOvens = new AtomicInteger();
+
+    private final ReadyRate readyRate = new ReadyRate();
+
+    private final List<Thread> ovens = new ArrayList<>();
+
+    private final Counter readyOrders;
+
+    private final Timer leadTime;
+
+    private final DistributionSummary bakeSizes;
+
+    public KitchenEngine(KitchenProperties properties, Function<Short, Duration> bakeTime, Consumer<List<Long>> onReady,
+                         MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.bakeTime = bakeTime;
+        this.onReady = onReady;
+        Gauge.builder("kitchen.queue.depth", this, KitchenEngine::queueDepth)
+                .description("Orders waiting for or in an oven").register(meterRegistry);
+        Gauge.builder("kitchen.queue.cookies", this, KitchenEngine::waitingCookies)
+                .description("Cookies waiting for an oven").register(meterRegistry);
+        Gauge.builder("kitchen.ovens.busy", busyOvens, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("kitchen.orders.per.minute", this, KitchenEngine::ordersPerMinute)
+                .description("Orders ready during the last minute").register(meterRegistry);
+        readyOrders = Counter.builder("kitchen.orders.ready").register(meterRegistry);
+        leadTime = Timer.builder("kitchen.order.lead.time")
+                .description("From the kitchen queue to ready").register(meterRegistry);
+        bakeSizes = DistributionSummary.builder("kitchen.bake.size").baseUnit("cookies").register(meterRegistry);
+    }
+
+    public synchronized void start() {
+        for (int i = ovens.size(); i < properties.ovens(); i++) {
+            ovens.add(Thread.ofPlatform().name("oven-" + i).daemon().start(this::bake));
+        }
+    }
+
+    // the orders being baked are lost, as the ones still queued
+    public synchronized void stop() {
+        ovens.forEach(Thread::interrupt);
+        try {
+            for (Thread oven : ovens) {
+                oven.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ovens.clear();
+    }
+
+    // Blocks while the queue is full, up to the submit timeout (then returns false). An order already queued is ignored, as
+    // the orders may be submitted again (at-least-once delivery)
+    public boolean submit(long orderId, Map<Short, Integer> cookies) throws InterruptedException {
+        return submit(orderId, cookies, properties.submitTimeout().toNanos());
+    }
+
+    // As submit, without waiting: false at once when the queue is full
+    public boolean offer(long orderId, Map<Short, Integer> cookies) throws InterruptedException {
+        return submit(orderId, cookies, 0);
+    }
+
+    private boolean submit(long orderId, Map<Short, Integer> cookies, long wait) throws InterruptedException {
+        int total = cookies.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0)
+            throw new IllegalArgumentException("Nothing to bake in order " + orderId);
+        lock.lockInterruptibly();
+        try {
+            while (!queued.containsKey(orderId) && queued.size() >= properties.queueCapacity()) {
+                if (wait <= 0)
+                    return false;
+                wait = roomInQueue.awaitNanos(wait);
+            }
+            if (queued.containsKey(orderId))
+                return true;
+            Ticket ticket = new Ticket(orderId, nextSequence++, total <= properties.expressThreshold(), total);
+            cookies.forEach((recipe, quantity) -> {
+                if (quantity > 0)
+                    lines.computeIfAbsent(recipe, RecipeLine::new).add(new Portion(ticket, quantity));
+            });
+            queued.put(orderId, ticket);
+            waitingCookies += total;
+            workToDo.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queueDepth() {
+        lock.lock();
+        try {
+            return queued.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int waitingCookies() {
+        lock.lock();
+        try {
+            return waitingCookies;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long ordersPerMinute() {
+        return readyRate.lastMinute();
+    }
+
+    private void bake() {
+        try {
+            while (true) {
+                Bake bake = nextBake();
+                busyOvens.incrementAndGet();
+                try {
+                    Thread.sleep(bakeTime.apply(bake.recipe()));
+                } finally {
+                    busyOvens.decrementAndGet();
+                }
+                bakeSizes.record(bake.cookies());
+                List<Ticket> ready = complete(bake);
+                if (!ready.isEmpty())
+                    deliver(ready);
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private Bake nextBake() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            RecipeLine line;
+            while ((line = mostUrgentLine()) == null) {
+                workToDo.await();
+            }
+            List<Portion> baked = new ArrayList<>();
+            int cookies = 0;
+            Deque<Portion> portions;
+            while (cookies < properties.ovenCapacity() && !(portions = line.next()).isEmpty()) {
+                Portion head = portions.peek();
+                int taken = Math.min(head.cookies, properties.ovenCapacity() - cookies);
+                baked.add(new Portion(head.ticket, taken));
+                cookies += taken;
+                head.cookies -= taken; // the rest of a portion waits for the next bake of the recipe
+                if (head.cookies == 0)
+                    portions.poll();
+            }
+            waitingCookies -= cookies;
+            return new Bake(line.recipe, cookies, baked);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RecipeLine mostUrgentLine() {
+        RecipeLine urgent = null;
+        for (RecipeLine line : lines.values()) {
+            Portion head = line.next().peek();
+            if (head != null && (urgent == null || head.ticket.isMoreUrgentThan(urgent.next().peek().ticket)))
+                urgent = line;
+        }
+        return urgent;
+    }
+
+    private List<Ticket> complete(Bake bake) {
+        List<Ticket> ready = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Portion portion : bake.portions()) {
+                portion.ticket.remainingCookies -= portion.cookies;
+                if (portion.ticket.remainingCookies == 0) {
+                    ready.add(portion.ticket);
+                    queued.remove(portion.ticket.orderId);
+                }
+            }
+            if (!ready.isEmpty())
+                roomInQueue.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return ready;
+    }
+
+    private void deliver(List<Ticket> ready) {
+        long now = System.nanoTime();
+        ready.forEach(ticket -> leadTime.record(now - ticket.submittedAt, TimeUnit.NANOSECONDS));
+        readyOrders.increment(ready.size());
+        readyRate.add(ready.size());
+        List<Long> orderIds = ready.stream().map(ticket -> ticket.orderId).toList();
+        try {
+            onReady.accept(orderIds);
+        } catch (RuntimeException e) { // the oven goes on with the next bake
+            LOG.warn("TCFS:Kitchen: Orders {} baked but not marked as ready", orderIds, e);
+        }
+    }
+
+    private static final class Ticket {
+        private final long orderId;
+        private final long sequence;
+        private final boolean express;
+        private final long submittedAt = System.nanoTime();
+        private int remainingCookies;
+
+        private Ticket(long orderId, long sequence, boolean express, int cookies) {
+            this.orderId = orderId;
+            this.sequence = sequence;
+            this.express = express;
+            this.remainingCookies = cookies;
+        }
+
+        private boolean isMoreUrgentThan(Ticket other) {
+            return express != other.express ? express : sequence < other.sequence;
+        }
+    }
+
+    // cookies of one recipe of an order
+    private static final class Portion {
+        private final Ticket ticket;
+        private int cookies;
+
+        private Portion(Ticket ticket, int cookies) {
+            this.ticket = ticket;
+            this.cookies = cookies;
+        }
+    }
+
+    private static final class RecipeLine {
+        private final short recipe;
+        private final Deque<Portion> express = new ArrayDeque<>();
+        private final Deque<Portion> regular = new ArrayDeque<>();
+
+        private RecipeLine(short recipe) {
+            this.recipe = recipe;
+        }
+
+        private void add(Portion portion) {
+            (portion.ticket.express ? express : regular).add(portion);
+        }
+
+        private Deque<Portion> next() {
+            return express.isEmpty() ? regular : express;
+        }
+    }
+
+    private record Bake(short recipe, int cookies, List<Portion> portions) {
+    }
+
+    // orders ready during the last minute, counted by second
+    private static final class ReadyRate {
+        private final long[] seconds = new long[60];
+        private final long[] counts = new long[60];
+
+        private synchronized void add(int orders) {
+            long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+            int slot = (int) Math.floorMod(second, 60);
+            if (seconds[slot] != second) {
+                seconds[slot] = second;
+                counts[slot] = 0;
+            }
+            counts[slot] += orders;
+        }
+
+        private synchronized long lastMinute() {
+            long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+            long total = 0;
+            for (int slot = 0; slot < 60; slot++) {
+                if (second - seconds[slot] < 60)
+                    total += counts[slot];
+            }
+            return total;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import fr.univcotedazur.simpletcfs.dto.OrderStatusEvent;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusListener;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusNotifier;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// In-memory fan-out of the order status changes to their subscribers (e.g. the SSE streams of OrderController). The
+// subscribers are callbacks, not threads: an idle one only costs its registration. A change is published once its
+// transaction is committed, and delivered to the subscribers outside the thread that changed the order, by the lanes
+// of the hub: not by the application task executor, which completes the checkouts, as a slow client blocks its
+// delivery (SseEmitter.send). A lane is a single thread, and the changes of an order always go through the same lane,
+// so that they are delivered in order. Beyond the capacity of its lane, a change is dropped instead of queued: its
+// listeners are unsubscribed and told so (OrderStatusListener.dropped, e.g. their stream is closed).
+@Component
+public class OrderStatusHub implements OrderStatusNotifier, OrderStatusTracker, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OrderStatusHub.class);
+
+    private final List<? extends Executor> lanes;
+
+    private final Map<Long, Set<OrderStatusListener>> byOrder = new ConcurrentHashMap<>();
+
+    private final Set<OrderStatusListener> allOrders = ConcurrentHashMap.newKeySet();
+
+    private final Counter droppedChanges;
+
+    @Autowired
+    public OrderStatusHub(@Value("${orders.events.delivery-threads:2}") int deliveryThreads,
+                          @Value("${orders.events.queue-capacity:10000}") int queueCapacity, MeterRegistry meterRegistry) {
+        this(IntStream.range(0, deliveryThreads).mapToObj(index -> lane(index, Math.max(1, queueCapacity / deliveryThreads))).toList(),
+                meterRegistry);
+    }
+
+    OrderStatusHub(List<? extends Executor> lanes, MeterRegistry meterRegistry) {
+        this.lanes = lanes;
+        Gauge.builder("orders.events.subscribers", this, OrderStatusHub::subscriberCount)
+                .description("Listeners of the order status changes").register(meterRegistry);
+        this.droppedChanges = Counter.builder("orders.events.dropped")
+                .description("Status changes not delivered, the delivery queue being full").register(meterRegistry);
+    }
+
+    private static ThreadPoolExecutor lane(int index, int capacity) { // rejects when full
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity),
+                Thread.ofPlatform().name("order-events-" + index).daemon().factory());
+    }
+
+    @Override
+    public void destroy() {
+        lanes.forEach(lane -> {
+            if (lane instanceof ExecutorService executorService)
+                executorService.shutdownNow();
+        });
+    }
+
+    @Override
+    public void statusChanged(Order order) {
+        OrderStatusEvent event = new OrderStatusEvent(order.getId(), order.getCustomer().getId(), order.getStatus());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() { // a rolled back change is not published
+                    publish(event);
+                }
+            });
+        } else {
+            publish(event);
+        }
+    }
+
+    private void publish(OrderStatusEvent event) {
+        Set<OrderStatusListener> followers = byOrder.get(event.orderId());
+        if ((followers == null || followers.isEmpty()) && allOrders.isEmpty())
+            return;
+        try {
+            lanes.get(Math.floorMod(event.orderId().hashCode(), lanes.size())).execute(() -> {
+                if (followers != null)
+                    followers.forEach(listener -> deliver(event, listener, () -> unsubscribe(event.orderId(), listener)));
+                allOrders.forEach(listener -> deliver(event, listener, () -> unsubscribeAll(listener)));
+            });
+        } catch (RejectedExecutionException e) {
+            droppedChanges.increment();
+            LOG.warn("TCFS:OrderStatusHub: Too many waiting deliveries, the listeners of {} are dropped", event);
+            if (followers != null)
+                followers.forEach(listener -> drop(listener, () -> unsubscribe(event.orderId(), listener)));
+            allOrders.forEach(listener -> drop(listener, () -> unsubscribeAll(listener)));
+        }
+    }
+
+    private static void drop(OrderStatusListener listener, Runnable unsubscribe) {
+        unsubscribe.run();
+        try {
+            listener.dropped();
+        } catch (RuntimeException e) {
+            LOG.debug("TCFS:OrderStatusHub: Failure of a dropped listener", e);
+        }
+    }
+
+    private static void deliver(OrderStatusEvent event, OrderStatusListener listener, Runnable unsubscribe) {
+        try {
+            listener.accept(event);
+        } catch (RuntimeException e) {
+            LOG.debug("TCFS:OrderStatusHub: Listener unsubscribed after a failure", e);
+            unsubscribe.run();
+        }
+    }
+
+    @Override
+    public void subscribe(Long orderId, OrderStatusListener listener) {
+        byOrder.compute(orderId, (id, listeners) -> { // atomic with the removal of the set by unsubscribe
+            Set<OrderStatusListener> followers = listeners == null ? ConcurrentHashMap.newKeySet() : listeners;
+            followers.add(listener);
+            return followers;
+        });
+    }
+
+    @Override
+    public void unsubscribe(Long orderId, OrderStatusListener listener) {
+        byOrder.computeIfPresent(orderId, (id, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners; // the set of an order is removed with its last listener
+        });
+    }
+
+    @Override
+    public void subscribeAll(OrderStatusListener listener) {
+        allOrders.add(listener);
+    }
+
+    @Override
+    public void unsubscribeAll(OrderStatusListener listener) {
+        allOrders.remove(listener);
+    }
+
+    public int subscriberCount() {
+        return allOrders.size() + byOrder.values().stream().mapToInt(Set::size).sum();
+    }
+
+}
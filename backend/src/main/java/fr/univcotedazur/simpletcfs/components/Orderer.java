@@ -1,37 +1,69 @@
 package fr.univcotedazur.simpletcfs.components;
 
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.entities.Order;
 import fr.univcotedazur.simpletcfs.entities.OrderStatus;
 import fr.univcotedazur.simpletcfs.exceptions.OrderIdNotFoundException;
 import fr.univcotedazur.simpletcfs.interfaces.OrderCreator;
 import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
 import fr.univcotedazur.simpletcfs.interfaces.OrderModifier;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusNotifier;
 import fr.univcotedazur.simpletcfs.repositories.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class Orderer implements OrderCreator, OrderFinder, OrderModifier {
 
     private final OrderRepository orderRepository;
 
+    private final OrderStatusNotifier statusNotifier;
+
     @Autowired
-    public Orderer(OrderRepository orderRepository) {
+    public Orderer(OrderRepository orderRepository, OrderStatusNotifier statusNotifier) {
         this.orderRepository = orderRepository;
+        this.statusNotifier = statusNotifier;
     }
 
     @Override
     @Transactional(propagation = Propagation.MANDATORY) // must be called within a transaction
-    public Order createOrder(Customer customer, double price, String payReceiptId) {
+    public Order createOrder(Customer customer, Money price, String payReceiptId) {
         return orderRepository.save(new Order(customer, customer.getCart(), price, payReceiptId));
     }
 
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Order reserveOrder(Customer customer, Money price) {
+        Order order = new Order(customer, customer.getCart(), price, null); // no receipt until the bank has answered
+        order.setStatus(OrderStatus.PAYMENT_PENDING);
+        order.setReservedAt(Instant.now());
+        return orderRepository.save(order);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void cancelReservedOrder(Long orderId) {
+        orderRepository.findById(orderId)
+                .filter(order -> order.getStatus() == OrderStatus.PAYMENT_PENDING)
+                .ifPresent(order -> {
+                    order.getCustomer().getOrders().remove(order);
+                    orderRepository.delete(order);
+                });
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Optional<Order> findById(Long id) {
@@ -44,6 +76,44 @@ public class Orderer implements OrderCreator, OrderFinder, OrderModifier {
         return orderRepository.findAll();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<OrderDTO> findPage(Long after, int limit) {
+        return orderRepository.findOrderDTOsAfter(after, Limit.of(limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachOrder(Consumer<OrderDTO> action) {
+        try (Stream<OrderDTO> orders = orderRepository.streamAllOrderDTOs()) {
+            orders.forEach(action);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Order> findByStatus(OrderStatus status) {
+        return orderRepository.findByStatusOrderByIdAsc(status);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<OrderDTO> findPageForCustomerWithStatus(Long customerId, OrderStatus status, Long after, int limit) {
+        return orderRepository.findOrderDTOsForCustomerWithStatus(customerId, status, after, Limit.of(limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> findStaleReservationIds(Instant reservedBefore, int limit) {
+        return orderRepository.findIdsToRecover(OrderStatus.PAYMENT_PENDING, reservedBefore, Limit.of(limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> findIdsWithStatus(Collection<Long> orderIds, OrderStatus status) {
+        return orderRepository.findIdsByIdInAndStatus(orderIds, status);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Order retrieveOrder(Long orderId) throws OrderIdNotFoundException {
@@ -56,10 +126,45 @@ public class Orderer implements OrderCreator, OrderFinder, OrderModifier {
         return retrieveOrder(orderId).getStatus();
     }
 
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Order orderIsPaid(Long orderId, String payReceiptId) {
+        Order order = orderRepository.findById(orderId)
+                .filter(reserved -> reserved.getStatus() == OrderStatus.PAYMENT_PENDING)
+                .orElseThrow(() -> new IllegalStateException("No order waiting for its payment with id " + orderId));
+        order.setPayReceiptId(payReceiptId);
+        order.setStatus(OrderStatus.VALIDATED);
+        return order;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Order> ordersArePaid(Map<Long, String> payReceiptIdsByOrderId) {
+        List<Order> orders = orderRepository.findAllWithCustomerByIdIn(payReceiptIdsByOrderId.keySet());
+        if (orders.size() != payReceiptIdsByOrderId.size() || orders.stream().anyMatch(order -> order.getStatus() != OrderStatus.PAYMENT_PENDING))
+            throw new IllegalStateException("Not all orders are waiting for their payment in " + payReceiptIdsByOrderId.keySet());
+        orders.forEach(order -> { // the updates are sent as a JDBC batch when flushed
+            order.setPayReceiptId(payReceiptIdsByOrderId.get(order.getId()));
+            order.setStatus(OrderStatus.VALIDATED);
+        });
+        return orders;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Order> paymentsReceived(Map<Long, String> payReceiptIdsByOrderId) {
+        List<Order> orders = orderRepository.findAllWithCustomerByIdIn(payReceiptIdsByOrderId.keySet()).stream()
+                .filter(order -> order.getStatus() == OrderStatus.PAYMENT_PENDING)
+                .toList();
+        orders.forEach(order -> order.setPayReceiptId(payReceiptIdsByOrderId.get(order.getId())));
+        return orders;
+    }
+
     @Override
     @Transactional(propagation = Propagation.MANDATORY)
     public Order orderIsNowInProgress(Order order) {
         order.setStatus(OrderStatus.IN_PROGRESS);
+        statusNotifier.statusChanged(order);
         return order;
     }
 
@@ -67,8 +172,22 @@ public class Orderer implements OrderCreator, OrderFinder, OrderModifier {
     @Transactional(propagation = Propagation.MANDATORY)
     public Order orderIsNowReady(Order order) {
         order.setStatus(OrderStatus.READY);
+        statusNotifier.statusChanged(order);
         return order;
     }
 
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Order> ordersAreReady(Collection<Long> orderIds) {
+        List<Order> orders = orderRepository.findAllById(orderIds).stream() // an order may have been deleted meanwhile
+                .filter(order -> order.getStatus() == OrderStatus.IN_PROGRESS)
+                .toList();
+        orders.forEach(order -> {
+            order.setStatus(OrderStatus.READY);
+            statusNotifier.statusChanged(order);
+        });
+        return orders;
+    }
+
 
 }
@@ -0,0 +1,162 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univcotedazur.simpletcfs.dto.OrderCreatedEvent;
+import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OutboxEvent;
+import fr.univcotedazur.simpletcfs.interfaces.OrderEventConsumer;
+import fr.univcotedazur.simpletcfs.interfaces.OrderEventPublisher;
+import fr.univcotedazur.simpletcfs.repositories.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Transactional outbox: the events are written in the transaction of the orders, so that they exist if and only if the
+// orders are committed, and the relay delivers them by batches to all the consumers in the background. The delivery is
+// at least once: the events are deleted once all the consumers accepted them, and delivered again if a consumer did not
+// accept them yet (e.g. the kitchen queue is full), failed on them (up to outbox.relay.max-attempts times, then moved to
+// the outbox_dead_event table) or if the relay was stopped in between.
+@Component
+public class Outbox implements OrderEventPublisher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Outbox.class);
+
+    public static final String ORDER_CREATED = "ORDER_CREATED";
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final List<OrderEventConsumer> consumers;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final int batchSize;
+
+    private final int maxAttempts;
+
+    @Autowired
+    public Outbox(OutboxEventRepository outboxEventRepository, List<OrderEventConsumer> consumers,
+                  TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                  @Value("${outbox.relay.batch-size:100}") int batchSize,
+                  @Value("${outbox.relay.max-attempts:10}") int maxAttempts) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.consumers = consumers;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY) // must be called within the transaction of the order
+    public void orderCreated(Order order) {
+        OrderCreatedEvent event = new OrderCreatedEvent(order.getId(), order.getCustomer().getId(),
+                order.getItems().stream().collect(Collectors.toMap(Item::getRecipeId, Item::getQuantity, Integer::sum)),
+                order.getPrice());
+        try {
+            outboxEventRepository.save(new OutboxEvent(ORDER_CREATED, order.getId(), objectMapper.writeValueAsString(event)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Not transactional: the consumers are called between the short transactions reading then updating the batch. The
+    // events a consumer did not accept yet (backpressure) are kept as they are, delivered again at the next relay. Only
+    // the failures of an event count against its attempts: an unreadable payload, or a delivery failing again when the
+    // event is delivered alone (the other events of a failed batch are delivered one by one).
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:200}")
+    public synchronized void relay() {
+        List<OutboxEvent> batch;
+        boolean complete;
+        do {
+            batch = transactionTemplate.execute(status ->
+                    outboxEventRepository.findByOrderByIdAsc(Limit.of(batchSize)));
+            if (batch.isEmpty())
+                return;
+            Map<OutboxEvent, OrderCreatedEvent> ordersCreated = new LinkedHashMap<>();
+            List<OutboxEvent> failed = new ArrayList<>();
+            for (OutboxEvent event : batch) {
+                if (!event.getType().equals(ORDER_CREATED))
+                    continue;
+                try {
+                    ordersCreated.put(event, readOrderCreated(event));
+                } catch (UncheckedIOException e) {
+                    LOG.warn("TCFS:Outbox: Event {} unreadable: {}", event.getId(), event.getPayload(), e);
+                    failed.add(event);
+                }
+            }
+            Set<Long> notAccepted = new HashSet<>(); // order ids
+            try {
+                notAccepted.addAll(deliver(List.copyOf(ordersCreated.values())));
+            } catch (RuntimeException e) {
+                if (ordersCreated.size() == 1) {
+                    OutboxEvent event = ordersCreated.keySet().iterator().next();
+                    LOG.warn("TCFS:Outbox: Delivery of event {} failed, delivered again later", event.getId(), e);
+                    failed.add(event);
+                } else {
+                    LOG.warn("TCFS:Outbox: Delivery of a batch of {} events failed, delivered one by one", ordersCreated.size(), e);
+                    ordersCreated.forEach((event, orderCreated) -> {
+                        try {
+                            notAccepted.addAll(deliver(List.of(orderCreated)));
+                        } catch (RuntimeException alone) {
+                            LOG.warn("TCFS:Outbox: Delivery of event {} failed, delivered again later", event.getId(), alone);
+                            failed.add(event);
+                        }
+                    });
+                }
+            }
+            List<Long> failedIds = failed.stream().map(OutboxEvent::getId).toList();
+            List<Long> deliveredIds = batch.stream()
+                    .filter(event -> !failed.contains(event) && !notAccepted.contains(event.getAggregateId()))
+                    .map(OutboxEvent::getId)
+                    .toList();
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!deliveredIds.isEmpty())
+                    outboxEventRepository.deleteAllByIdInBatch(deliveredIds);
+                if (!failedIds.isEmpty()) {
+                    outboxEventRepository.incrementAttempts(failedIds);
+                    outboxEventRepository.copyToDeadEvents(failedIds, maxAttempts);
+                    outboxEventRepository.deleteGivenUp(failedIds, maxAttempts);
+                }
+            });
+            failed.stream().filter(event -> event.getAttempts() + 1 >= maxAttempts).forEach(event ->
+                    LOG.error("TCFS:Outbox: Event {} given up after {} attempts, moved to outbox_dead_event: {}", event.getId(), maxAttempts, event.getPayload()));
+            complete = failed.isEmpty() && notAccepted.isEmpty(); // otherwise, the next batches wait for the next relay
+        } while (complete && batch.size() == batchSize);
+    }
+
+    private Set<Long> deliver(List<OrderCreatedEvent> ordersCreated) {
+        Set<Long> notAccepted = new HashSet<>();
+        if (!ordersCreated.isEmpty())
+            consumers.forEach(consumer -> notAccepted.addAll(consumer.ordersCreated(ordersCreated)));
+        return notAccepted;
+    }
+
+    private OrderCreatedEvent readOrderCreated(OutboxEvent event) {
+        try {
+            return objectMapper.readValue(event.getPayload(), OrderCreatedEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.univcotedazur.simpletcfs.dto.RecipeDTO;
+import fr.univcotedazur.simpletcfs.entities.Money;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Immutable snapshot of the catalog, replaced as a whole on each change (copy-on-write): the readers never lock, and
+// the lookups only read precomputed arrays and maps (the Optional results are built once, the range results are
+// views over the sorted arrays)
+final class RecipeIndex {
+
+    private static final int SEARCH_CACHE_SIZE = 1024;
+
+    private final Optional<RecipeDTO>[] byId; // the ids are compact, used as array index
+
+    private final Map<String, Optional<RecipeDTO>> byName;
+
+    private final String[] sortedNames;
+
+    private final List<RecipeDTO> sortedByName;
+
+    private final long[] sortedPrices; // in cents
+
+    private final List<RecipeDTO> sortedByPrice;
+
+    private final Set<String> names;
+
+    // Bounded cache of the completed searches (the result only depends on the pattern and the recipe names): the pattern
+    // is compiled and matched once, repeated searches (e.g. from the kiosks, on each keystroke) are a lookup without
+    // lock. It is kept while the names are unchanged
+    private final Cache<String, Set<String>> searches;
+
+    // Bounded cache of the patterns rejected for taking too long, rejected without being evaluated until they expire: a
+    // timeout also depends on the load of the server, it is not a result of the pattern
+    private final Cache<String, Boolean> rejectedSearches;
+
+    private RecipeIndex(List<RecipeDTO> recipes, Set<String> names, Cache<String, Set<String>> searches, Cache<String, Boolean> rejectedSearches) {
+        int maxId = recipes.stream().mapToInt(RecipeDTO::id).max().orElse(0);
+        @SuppressWarnings("unchecked")
+        Optional<RecipeDTO>[] ids = new Optional[maxId + 1];
+        Arrays.fill(ids, Optional.empty());
+        Map<String, Optional<RecipeDTO>> nameMap = new HashMap<>();
+        for (RecipeDTO recipe : recipes) {
+            Optional<RecipeDTO> found = Optional.of(recipe);
+            ids[recipe.id()] = found;
+            nameMap.put(recipe.name(), found);
+        }
+        this.byId = ids;
+        this.byName = nameMap;
+        RecipeDTO[] recipesByName = recipes.stream().sorted(Comparator.comparing(RecipeDTO::name)).toArray(RecipeDTO[]::new);
+        this.sortedNames = Arrays.stream(recipesByName).map(RecipeDTO::name).toArray(String[]::new);
+        this.sortedByName = List.of(recipesByName);
+        RecipeDTO[] recipesByPrice = recipes.stream().sorted(Comparator.comparing(RecipeDTO::price)).toArray(RecipeDTO[]::new);
+        this.sortedPrices = Arrays.stream(recipesByPrice).mapToLong(recipe -> recipe.price().cents()).toArray();
+        this.sortedByPrice = List.of(recipesByPrice);
+        this.names = names;
+        this.searches = searches;
+        this.rejectedSearches = rejectedSearches;
+    }
+
+    static RecipeIndex of(List<RecipeDTO> recipes, Duration searchRejectionTtl) {
+        Set<String> names = new LinkedHashSet<>();
+        recipes.stream().sorted(Comparator.comparing(RecipeDTO::id)).forEach(recipe -> names.add(recipe.name()));
+        return new RecipeIndex(recipes, Collections.unmodifiableSet(names),
+                Caffeine.newBuilder().maximumSize(SEARCH_CACHE_SIZE).build(),
+                Caffeine.newBuilder().maximumSize(SEARCH_CACHE_SIZE).expireAfterWrite(searchRejectionTtl).build());
+    }
+
+    // same recipes and names (hence the same name set and searches), with one of them changed
+    RecipeIndex with(RecipeDTO changed) {
+        List<RecipeDTO> recipes = sortedByName.stream()
+                .map(recipe -> recipe.id().equals(changed.id()) ? changed : recipe)
+                .toList();
+        return new RecipeIndex(recipes, names, searches, rejectedSearches);
+    }
+
+    // the recipes read again from the DB: the searches are kept if the names are unchanged
+    RecipeIndex reloaded(List<RecipeDTO> recipes, Duration searchRejectionTtl) {
+        RecipeIndex reloaded = of(recipes, searchRejectionTtl);
+        if (!List.copyOf(reloaded.names).equals(List.copyOf(names)))
+            return reloaded;
+        return new RecipeIndex(recipes, names, searches, rejectedSearches);
+    }
+
+    List<RecipeDTO> recipes() {
+        return sortedByName;
+    }
+
+    Optional<RecipeDTO> findById(short id) {
+        return id >= 0 && id < byId.length ? byId[id] : Optional.empty();
+    }
+
+    Optional<RecipeDTO> findByName(String name) {
+        return byName.getOrDefault(name, Optional.empty());
+    }
+
+    List<RecipeDTO> findByNamePrefix(String prefix) {
+        int from = firstNameNotBefore(prefix);
+        int to = from;
+        while (to < sortedNames.length && sortedNames[to].startsWith(prefix)) // names with the prefix are contiguous
+            to++;
+        return sortedByName.subList(from, to);
+    }
+
+    List<RecipeDTO> findByPriceRange(Money minPrice, Money maxPrice) {
+        int from = firstPriceAbove(minPrice.cents(), false);
+        int to = firstPriceAbove(maxPrice.cents(), true);
+        return from < to ? sortedByPrice.subList(from, to) : List.of();
+    }
+
+    Set<String> names() {
+        return names;
+    }
+
+    Cache<String, Set<String>> searches() {
+        return searches;
+    }
+
+    Cache<String, Boolean> rejectedSearches() {
+        return rejectedSearches;
+    }
+
+    private int firstNameNotBefore(String name) {
+        int low = 0;
+        int high = sortedNames.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedNames[middle].compareTo(name) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // first index with a price greater than (strict) or equal to the given price
+    private int firstPriceAbove(long cents, boolean strict) {
+        int low = 0;
+        int high = sortedPrices.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedPrices[middle] < cents || (strict && sortedPrices[middle] == cents))
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,34 @@
+package fr.univcotedazur.simpletcfs.configurations;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+// bank.http.* properties, the connection pool of the WebClient calling the bank, see application.properties
+@ConfigurationProperties(prefix = BankHttpProperties.PREFIX)
+public record BankHttpProperties(
+        @DefaultValue("100") int maxConnections,
+        @DefaultValue("500") int pendingAcquireMaxCount, // requests waiting for a connection, the ones beyond fail at once
+        @DefaultValue("2s") Duration pendingAcquireTimeout,
+        @DefaultValue("2s") Duration connectTimeout,
+        @DefaultValue("4s") Duration maxIdleTime, // below the keep-alive timeout of the bank (5s for Node.js)
+        @DefaultValue("5m") Duration maxLifeTime,
+        @DefaultValue("10s") Duration evictInBackground,
+        @DefaultValue("true") boolean http2, // negotiated with https banks, HTTP/1.1 otherwise
+        @DefaultValue("50ms") Duration batchTimeoutPerPayment) { // added to the timeout of a payment for a batch
+
+    public static final String PREFIX = "bank.http";
+
+    public BankHttpProperties {
+        if (maxConnections < 1)
+            throw new IllegalArgumentException("The bank needs at least one connection");
+    }
+
+    // the defaults above, when not created by Spring (e.g. in tests)
+    public static BankHttpProperties defaults() {
+        return new Binder().bindOrCreate(PREFIX, BankHttpProperties.class);
+    }
+
+}
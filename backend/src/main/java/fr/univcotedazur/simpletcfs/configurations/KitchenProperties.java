@@ -0,0 +1,30 @@
+package fr.univcotedazur.simpletcfs.configurations;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+// kitchen.* properties, see application.properties
+@ConfigurationProperties(prefix = "kitchen")
+public record KitchenProperties(
+        @DefaultValue("2") int ovens,
+        @DefaultValue("24") int ovenCapacity, // cookies of a same recipe baked together
+        @DefaultValue("1000") int queueCapacity, // orders waiting for (or in) an oven
+        @DefaultValue("6") int expressThreshold, // orders of at most this number of cookies are baked first
+        @DefaultValue("10s") Duration bakeTime,
+        Map<String, Duration> bakeTimes, // by recipe name, bakeTime otherwise
+        @DefaultValue("5s") Duration submitTimeout) {
+
+    public KitchenProperties {
+        if (ovens < 1 || ovenCapacity < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("The kitchen needs at least one oven, of one cookie, and one order in its queue");
+        bakeTimes = bakeTimes == null ? Map.of() : Map.copyOf(bakeTimes);
+    }
+
+    public Duration bakeTimeOf(String recipe) {
+        return bakeTimes.getOrDefault(recipe, bakeTime);
+    }
+
+}
@@ -1,47 +1,209 @@
 package fr.univcotedazur.simpletcfs.connectors;
 
+import fr.univcotedazur.simpletcfs.configurations.BankHttpProperties;
 import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentReceiptDTO;
 import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentRequestDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.interfaces.Bank;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.netty.channel.ChannelOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
-public class BankProxy implements Bank {
+public class BankProxy implements Bank, DisposableBean {
 
     private static final Logger LOG = LoggerFactory.getLogger(BankProxy.class);
 
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static final int MAX_BATCH_SIZE = 100; // payments per POST /cctransactions/batch
+
+    public static final String BANK = "bank"; // name of the circuit breaker and of the bulkhead
+
     private final String bankHostandPort;
 
     private final WebClient webClient;
 
+    private final ConnectionProvider connectionProvider;
+
+    private final int fallbackConcurrency;
+
+    private final Duration batchTimeoutPerPayment;
+
+    // set to false once the bank has answered that it does not know the batch endpoint
+    private final AtomicBoolean batchSupported = new AtomicBoolean(true);
+
+    // Opened when too many bank calls fail or are slow: the payments are then rejected at once instead of each one
+    // waiting for the timeout (while holding a DB connection in the blocking validation), until a few probe calls
+    // succeed in the half-open state
+    private final CircuitBreaker circuitBreaker;
+
+    // bounds the bank calls in flight, the ones beyond are rejected at once
+    private final Bulkhead bulkhead;
+
+    // the circuit breaker and the bulkhead are configured by the resilience4j.*.instances.bank.* properties
     @Autowired
-    public BankProxy(@Value("${bank.host.baseurl}") String bankHostandPort) {
+    public BankProxy(@Value("${bank.host.baseurl}") String bankHostandPort,
+                     @Value("${bank.batch.fallback-concurrency:8}") int fallbackConcurrency,
+                     CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                     BankHttpProperties httpProperties) {
         this.bankHostandPort = bankHostandPort;
+        this.fallbackConcurrency = fallbackConcurrency;
+        this.batchTimeoutPerPayment = httpProperties.batchTimeoutPerPayment();
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(BANK);
+        this.bulkhead = bulkheadRegistry.bulkhead(BANK);
+        // A pool of kept-alive connections dedicated to the bank, bounded so that a slow bank cannot exhaust the sockets.
+        // Its metrics (reactor.netty.connection.provider.*, tagged name=bank) give the active, idle and pending
+        // connections, and the time to acquire one (pending.connections.time)
+        this.connectionProvider = ConnectionProvider.builder(BANK)
+                .maxConnections(httpProperties.maxConnections())
+                .pendingAcquireMaxCount(httpProperties.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(httpProperties.pendingAcquireTimeout())
+                .maxIdleTime(httpProperties.maxIdleTime())
+                .maxLifeTime(httpProperties.maxLifeTime())
+                .evictInBackground(httpProperties.evictInBackground())
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) httpProperties.connectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                // HTTP/2 is negotiated (ALPN) with an https bank, a plain http one may not support it
+                .protocol(httpProperties.http2() && bankHostandPort.startsWith("https:") ?
+                        new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11} : new HttpProtocol[]{HttpProtocol.HTTP11});
         this.webClient = WebClient.builder()
                 .baseUrl(this.bankHostandPort)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
     }
 
+    @Override
+    public void destroy() {
+        connectionProvider.dispose();
+    }
+
     @Override
     @Transactional(propagation = Propagation.MANDATORY)
-    public Optional<String> pay(Customer customer, double value) {
+    public Optional<String> pay(Customer customer, Money value) {
+        return payment(new PaymentRequestDTO(customer.getCreditCard(), value)).blockOptional();
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> payAsync(Customer customer, Money value) {
+        // no transaction required, nothing is blocked while the request is in flight
+        return payment(new PaymentRequestDTO(customer.getCreditCard(), value))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .toFuture();
+    }
+
+    @Override
+    public List<CompletableFuture<Optional<String>>> payAll(List<PaymentRequestDTO> payments) {
+        List<CompletableFuture<Optional<String>>> receipts = payments.stream().map(payment -> new CompletableFuture<Optional<String>>()).toList();
+        Flux.range(0, (payments.size() + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE)
+                .concatMap(index -> {
+                    int from = index * MAX_BATCH_SIZE;
+                    int to = Math.min(from + MAX_BATCH_SIZE, payments.size());
+                    return batchPayment(payments.subList(from, to), receipts.subList(from, to));
+                })
+                .subscribe();
+        return receipts;
+    }
+
+    // completes the receipts of the batch, and never fails so that the next batches are sent anyway
+    private Mono<Void> batchPayment(List<PaymentRequestDTO> batch, List<CompletableFuture<Optional<String>>> receipts) {
+        if (!batchSupported.get())
+            return individualPayments(batch, receipts);
+        return webClient.post()
+                .uri("/cctransactions/batch")
+                .bodyValue(batch)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<PaymentReceiptDTO>>() {}) // null for a rejected payment
+                .timeout(TIMEOUT.plus(batchTimeoutPerPayment.multipliedBy(batch.size()))) // a larger batch takes longer
+                .map(Optional::of)
+                // empty when the bank does not know the batch endpoint: handled before the circuit breaker, as this
+                // answer is not a failure of the bank
+                .onErrorResume(BankProxy::isBatchUnsupported, error -> Mono.just(Optional.empty()))
+                .transformDeferred(this::guarded)
+                .onErrorResume(BankProxy::isFastFailure, error -> {
+                    LOG.warn("Batch of {} payments not sent to the bank: {}", batch.size(), error.getMessage());
+                    return Mono.just(Optional.of(Arrays.asList(new PaymentReceiptDTO[batch.size()])));
+                })
+                .flatMap(answer -> {
+                    if (answer.isEmpty()) {
+                        LOG.warn("The bank does not support batch payments, falling back to individual payments");
+                        batchSupported.set(false);
+                        return individualPayments(batch, receipts);
+                    }
+                    if (answer.get().size() != batch.size())
+                        return Mono.error(new IllegalStateException(answer.get().size() + " receipts received for " + batch.size() + " payments"));
+                    for (int i = 0; i < batch.size(); i++) {
+                        receipts.get(i).complete(Optional.ofNullable(answer.get().get(i)).map(PaymentReceiptDTO::payReceiptId));
+                    }
+                    return Mono.<Void>empty();
+                })
+                .onErrorResume(error -> { // no usable answer (timeout, network error...): the bank may have paid them
+                    LOG.warn("Batch of {} payments without answer from the bank: {}", batch.size(), error.toString());
+                    receipts.forEach(receipt -> receipt.completeExceptionally(error));
+                    return Mono.empty();
+                });
+    }
+
+    private static boolean isBatchUnsupported(Throwable error) {
+        return error instanceof WebClientResponseException.NotFound || error instanceof WebClientResponseException.MethodNotAllowed;
+    }
+
+    private Mono<Void> individualPayments(List<PaymentRequestDTO> batch, List<CompletableFuture<Optional<String>>> receipts) {
+        return Flux.range(0, batch.size())
+                .flatMap(index -> payment(batch.get(index))
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .doOnNext(receipts.get(index)::complete)
+                        .then()
+                        .onErrorResume(error -> { // one failing payment must not fail the others (that may have been paid)
+                            LOG.warn("Payment failed in a batch: {}", error.toString());
+                            receipts.get(index).completeExceptionally(error);
+                            return Mono.empty();
+                        }), fallbackConcurrency)
+                .then();
+    }
+
+    private Mono<String> payment(PaymentRequestDTO paymentRequest) {
         return webClient.post()
                 .uri("/cctransactions")
-                .bodyValue(new PaymentRequestDTO(customer.getCreditCard(), value))
+                .bodyValue(paymentRequest)
                 .retrieve()
                 .onStatus(HttpStatusCode::is2xxSuccessful,
                         clientResponse -> clientResponse.statusCode().equals(HttpStatus.CREATED) ?
@@ -53,7 +215,7 @@ public class BankProxy implements Bank {
                                 clientResponse.createException().flatMap(Mono::error)) // return an error with the predefined exception
                 .bodyToMono(PaymentReceiptDTO.class)
                 .switchIfEmpty(Mono.error(new EmptyResponseException("Empty response body from the bank")))
-                .timeout(Duration.ofSeconds(5))
+                .timeout(TIMEOUT)
                 .map(PaymentReceiptDTO::payReceiptId)
                 .onErrorResume(error -> {
                     if (error instanceof EmptyResponseException) { // this is our exception, for cases where we cant to return an empty optional
@@ -62,7 +224,22 @@ public class BankProxy implements Bank {
                     }
                     return Mono.error(error); // other errors, we want to propagate
                 })
-                .blockOptional();
+                .transformDeferred(this::guarded) // after the rejections are handled: a rejected payment is a successful call
+                .onErrorResume(BankProxy::isFastFailure, error -> {
+                    // rejected without calling the bank, the Cashier then raises a PaymentException
+                    LOG.warn("Payment not sent to the bank: {}", error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    // the bulkhead first, so that the calls it rejects are not counted as failures by the circuit breaker
+    private <T> Mono<T> guarded(Mono<T> call) {
+        return call.transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead));
+    }
+
+    private static boolean isFastFailure(Throwable error) {
+        return error instanceof CallNotPermittedException || error instanceof BulkheadFullException;
     }
 
     private static class EmptyResponseException extends RuntimeException {
@@ -1,7 +1,9 @@
 package fr.univcotedazur.simpletcfs.connectors.externaldto;
 
+import fr.univcotedazur.simpletcfs.entities.Money;
+
 // External DTO to receive a payment receipt from a successful POST payment request to the external Bank system
-public record PaymentReceiptDTO (String payReceiptId, double amount)
+public record PaymentReceiptDTO (String payReceiptId, Money amount)
 {
 }
 
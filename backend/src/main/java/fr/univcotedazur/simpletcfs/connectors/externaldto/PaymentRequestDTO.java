@@ -1,6 +1,8 @@
 package fr.univcotedazur.simpletcfs.connectors.externaldto;
 
+import fr.univcotedazur.simpletcfs.entities.Money;
+
 // External DTO (Data Transfert Object) to POST payment request to the external Bank system
-public record PaymentRequestDTO (String creditCard, double amount)
+public record PaymentRequestDTO (String creditCard, Money amount)
 {
 }
@@ -1,18 +1,36 @@
 package fr.univcotedazur.simpletcfs.controllers;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.univcotedazur.simpletcfs.dto.CheckoutResultDTO;
+import fr.univcotedazur.simpletcfs.dto.ErrorDTO;
+import fr.univcotedazur.simpletcfs.dto.ItemDTO;
 import fr.univcotedazur.simpletcfs.dto.OrderDTO;
+import fr.univcotedazur.simpletcfs.dto.RecipeDTO;
 import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Order;
 import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
 import fr.univcotedazur.simpletcfs.exceptions.EmptyCartException;
 import fr.univcotedazur.simpletcfs.exceptions.NegativeQuantityException;
 import fr.univcotedazur.simpletcfs.exceptions.PaymentException;
+import fr.univcotedazur.simpletcfs.exceptions.TooManyCartsException;
+import fr.univcotedazur.simpletcfs.exceptions.UnknownRecipeException;
 import fr.univcotedazur.simpletcfs.interfaces.CartModifier;
 import fr.univcotedazur.simpletcfs.interfaces.CartProcessor;
+import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
+import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
@@ -23,29 +41,118 @@ public class CartController {
 
     public static final String CART_URI = "/{customerId}/cart";
 
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    // hard limit of a batch checkout, cart.validation.batch.max-carts can only lower it
+    public static final int MAX_CARTS_PER_BATCH = 10000;
+
     private final CartModifier cart;
 
     private final CartProcessor processor;
 
+    private final CatalogExplorator catalog;
+
+    // validations by customer and Idempotency-Key, pending or successful (a failed one is removed, it can be retried)
+    private final Cache<ValidationKey, CompletableFuture<OrderDTO>> validations;
+
+    private final int maxCartsPerBatch;
+
     @Autowired
-    public CartController(CartModifier cart, CartProcessor processor) {
+    public CartController(CartModifier cart, CartProcessor processor, CatalogExplorator catalog,
+                          @Value("${cart.validation.idempotency.ttl:1h}") Duration idempotencyTtl,
+                          @Value("${cart.validation.idempotency.max-keys:100000}") long idempotencyMaxKeys,
+                          @Value("${cart.validation.batch.max-carts:1000}") int maxCartsPerBatch) {
+        if (maxCartsPerBatch < 1 || maxCartsPerBatch > MAX_CARTS_PER_BATCH)
+            throw new IllegalArgumentException("cart.validation.batch.max-carts must be between 1 and " + MAX_CARTS_PER_BATCH);
         this.cart = cart;
         this.processor = processor;
+        this.catalog = catalog;
+        this.validations = Caffeine.newBuilder()
+                .expireAfterWrite(idempotencyTtl)
+                .maximumSize(idempotencyMaxKeys)
+                .build();
+        this.maxCartsPerBatch = maxCartsPerBatch;
     }
 
     @PostMapping(path = CART_URI, consumes = APPLICATION_JSON_VALUE)
-    public ResponseEntity<Item> updateCustomerCart(@PathVariable("customerId") Long customerId, @RequestBody Item it) throws CustomerIdNotFoundException, NegativeQuantityException {
-        return ResponseEntity.ok(cart.update(customerId, it)); // Item is used as a DTO in and out here...
+    public ResponseEntity<ItemDTO> updateCustomerCart(@PathVariable("customerId") Long customerId, @RequestBody ItemDTO it) throws CustomerIdNotFoundException, NegativeQuantityException, UnknownRecipeException {
+        RecipeDTO recipe = catalog.findByName(it.cookie()).orElseThrow(() -> new UnknownRecipeException(it.cookie()));
+        return ResponseEntity.ok(convertItemToDto(cart.update(customerId, new Item(recipe.id(), it.quantity()))));
     }
 
     @GetMapping(CART_URI)
-    public ResponseEntity<Set<Item>> getCustomerCartContents(@PathVariable("customerId") Long customerId) throws CustomerIdNotFoundException {
-        return ResponseEntity.ok(cart.cartContent(customerId));
+    public ResponseEntity<Set<ItemDTO>> getCustomerCartContents(@PathVariable("customerId") Long customerId) throws CustomerIdNotFoundException {
+        return ResponseEntity.ok(cart.cartContent(customerId).stream().map(this::convertItemToDto).collect(Collectors.toSet()));
     }
 
     @PostMapping(path = CART_URI + "/validate")
-    public ResponseEntity<OrderDTO> validate(@PathVariable("customerId") Long customerId) throws EmptyCartException, PaymentException, CustomerIdNotFoundException {
-        return ResponseEntity.ok().body(OrderController.convertOrderToDto(processor.validate(customerId)));
+    // asynchronous response: the servlet thread is released while the bank processes the payment
+    // (a rejected payment completes the future with a PaymentException, handled by the controller advice)
+    // A client retrying after a timeout sends the same Idempotency-Key: the retry gets the order of the first request
+    // (waiting for it if still pending), without a second payment nor any DB access
+    public CompletableFuture<ResponseEntity<OrderDTO>> validate(@PathVariable("customerId") Long customerId,
+                                                                @RequestHeader(name = IDEMPOTENCY_KEY, required = false) @Size(min = 1, max = 255) String idempotencyKey)
+            throws EmptyCartException, CustomerIdNotFoundException {
+        if (idempotencyKey == null)
+            return processor.validateAsync(customerId)
+                    .thenApply(order -> ResponseEntity.ok().body(OrderController.convertOrderToDto(order)));
+        ValidationKey key = new ValidationKey(customerId, idempotencyKey);
+        CompletableFuture<OrderDTO> validation = new CompletableFuture<>();
+        CompletableFuture<OrderDTO> first = validations.asMap().putIfAbsent(key, validation);
+        if (first != null)
+            return first.thenApply(order -> ResponseEntity.ok().header(IDEMPOTENT_REPLAYED, "true").body(order));
+        try {
+            processor.validateAsync(customerId).whenComplete((order, error) -> {
+                if (error == null) {
+                    validation.complete(OrderController.convertOrderToDto(order));
+                } else {
+                    validations.asMap().remove(key, validation);
+                    validation.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+            });
+        } catch (EmptyCartException | CustomerIdNotFoundException | RuntimeException e) {
+            validations.asMap().remove(key, validation);
+            validation.completeExceptionally(e); // for the concurrent retries
+            throw e;
+        }
+        return validation.thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping(path = "/carts/validate", consumes = APPLICATION_JSON_VALUE)
+    // batch checkout (e.g. the back-office settling the kiosk carts): 200 with one result per customer, or 400 beyond
+    // cart.validation.batch.max-carts customers (all the reserved orders are written in a single transaction)
+    public CompletableFuture<ResponseEntity<List<CheckoutResultDTO>>> validateAll(@RequestBody @Size(max = MAX_CARTS_PER_BATCH) List<Long> customerIds)
+            throws TooManyCartsException {
+        if (customerIds.size() > maxCartsPerBatch)
+            throw new TooManyCartsException(customerIds.size(), maxCartsPerBatch);
+        Map<Long, CompletableFuture<Order>> validations = processor.validateAll(customerIds);
+        return CompletableFuture.allOf(validations.values().toArray(CompletableFuture[]::new))
+                .handle((ignored, error) -> ResponseEntity.ok(validations.entrySet().stream()
+                        .map(validation -> convertToResult(validation.getKey(), validation.getValue()))
+                        .toList()));
+    }
+
+    // the items reference the recipes by id, the clients by name
+    private ItemDTO convertItemToDto(Item item) {
+        return new ItemDTO(catalog.findById(item.getRecipeId()).map(RecipeDTO::name).orElseThrow(), item.getQuantity());
+    }
+
+    private static CheckoutResultDTO convertToResult(Long customerId, CompletableFuture<Order> validation) {
+        if (!validation.isCompletedExceptionally())
+            return new CheckoutResultDTO(customerId, OrderController.convertOrderToDto(validation.resultNow()), null);
+        // same errors as the ones sent by the GlobalControllerAdvice for a single validation
+        ErrorDTO error = switch (validation.exceptionNow()) {
+            case CustomerIdNotFoundException e -> new ErrorDTO("Customer not found", e.getId() + " is not a valid customer Id");
+            case EmptyCartException e -> new ErrorDTO("Cart is empty", "from Customer " + e.getName());
+            case PaymentException e -> new ErrorDTO("Payment was rejected", "from Customer " + e.getName() + " for amount " + e.getAmount());
+            case Throwable e -> new ErrorDTO("Payment could not be processed", e.getMessage());
+        };
+        return new CheckoutResultDTO(customerId, null, error);
+    }
+
+    private record ValidationKey(Long customerId, String idempotencyKey) {
     }
 
 }
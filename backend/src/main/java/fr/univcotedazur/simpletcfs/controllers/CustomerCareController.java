@@ -1,22 +1,36 @@
 package fr.univcotedazur.simpletcfs.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import fr.univcotedazur.simpletcfs.dto.CustomerDTO;
 import fr.univcotedazur.simpletcfs.dto.ErrorDTO;
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
 import fr.univcotedazur.simpletcfs.exceptions.AlreadyExistingCustomerException;
 import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
 import fr.univcotedazur.simpletcfs.interfaces.CustomerFinder;
 import fr.univcotedazur.simpletcfs.interfaces.CustomerRegistration;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
 @RestController
 @RequestMapping(path = CustomerCareController.BASE_URI, produces = APPLICATION_JSON_VALUE)
@@ -24,14 +38,23 @@ public class CustomerCareController {
 
     public static final String BASE_URI = "/customers";
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final CustomerRegistration registry;
 
     private final CustomerFinder finder;
 
+    private final OrderFinder orderFinder;
+
+    private final ObjectWriter customerWriter;
+
     @Autowired
-    public CustomerCareController(CustomerRegistration registry, CustomerFinder finder) {
+    public CustomerCareController(CustomerRegistration registry, CustomerFinder finder, OrderFinder orderFinder,
+                                  ObjectMapper objectMapper) {
         this.registry = registry;
         this.finder = finder;
+        this.orderFinder = orderFinder;
+        this.customerWriter = objectMapper.writerFor(CustomerDTO.class);
     }
 
     @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
@@ -56,9 +79,40 @@ public class CustomerCareController {
         }
     }
 
+    // Keyset pagination, as for the orders: GET /customers?after=<last id of the previous page>&limit=<page size>
     @GetMapping
-    public ResponseEntity<List<CustomerDTO>> getCustomers() {
-        return ResponseEntity.ok(finder.findAll().stream().map(CustomerCareController::convertCustomerToDto).toList());
+    public ResponseEntity<List<CustomerDTO>> getCustomers(@RequestParam(defaultValue = "0") Long after,
+                                                          @RequestParam(defaultValue = "100") @Min(1) @Max(MAX_PAGE_SIZE) int limit) {
+        List<CustomerDTO> page = finder.findPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == limit) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.getLast().id())
+                    .replaceQueryParam("limit", limit)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page);
+    }
+
+    // All customers as newline-delimited JSON (Accept: application/x-ndjson), written while they are read from the DB
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCustomers() {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                finder.forEachCustomer(customer -> {
+                    try {
+                        outputStream.write(customerWriter.writeValueAsBytes(customer));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping(path = "/{customerId}")
@@ -66,6 +120,29 @@ public class CustomerCareController {
         return ResponseEntity.ok(convertCustomerToDto(finder.retrieveCustomer(customerId)));
     }
 
+    // "My orders in status X", by keyset pages: GET /customers/{customerId}/orders?status=IN_PROGRESS&after=<last id of the
+    // previous page>&limit=<page size>. The customer is only looked up when the page is empty (404 if unknown)
+    @GetMapping(path = "/{customerId}/orders")
+    public ResponseEntity<List<OrderDTO>> getCustomerOrders(@PathVariable("customerId") Long customerId,
+                                                            @RequestParam OrderStatus status,
+                                                            @RequestParam(defaultValue = "0") Long after,
+                                                            @RequestParam(defaultValue = "100") @Min(1) @Max(MAX_PAGE_SIZE) int limit)
+            throws CustomerIdNotFoundException {
+        List<OrderDTO> page = orderFinder.findPageForCustomerWithStatus(customerId, status, after, limit);
+        if (page.isEmpty())
+            finder.retrieveCustomer(customerId);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == limit) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("status", status)
+                    .replaceQueryParam("after", page.getLast().id())
+                    .replaceQueryParam("limit", limit)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page);
+    }
+
     private static CustomerDTO convertCustomerToDto(Customer customer) { // In more complex cases, we could use a ModelMapper such as MapStruct
         return new CustomerDTO(customer.getId(), customer.getName(), customer.getCreditCard());
     }
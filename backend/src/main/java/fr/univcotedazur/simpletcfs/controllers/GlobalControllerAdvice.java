@@ -7,7 +7,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
-@RestControllerAdvice(assignableTypes = {CustomerCareController.class, CartController.class})
+@RestControllerAdvice(assignableTypes = {CustomerCareController.class, CartController.class, RecipeController.class, OrderController.class})
 public class GlobalControllerAdvice {
 
     @ExceptionHandler({CustomerIdNotFoundException.class})
@@ -36,11 +36,23 @@ public class GlobalControllerAdvice {
                         " leading to quantity " + e.getPotentialQuantity());
     }
 
+    @ExceptionHandler({UnknownRecipeException.class})
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ErrorDTO handleExceptions(UnknownRecipeException e) {
+        return new ErrorDTO("Recipe not found", e.getName() + " is not a recipe of the catalog");
+    }
+
     @ExceptionHandler({PaymentException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorDTO handleExceptions(PaymentException e) {
         return new ErrorDTO("Payment was rejected", "from Customer " + e.getName() + " for amount " + e.getAmount());
     }
 
+    @ExceptionHandler({TooManyCartsException.class})
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorDTO handleExceptions(TooManyCartsException e) {
+        return new ErrorDTO("Too many carts", e.getCount() + " carts sent, at most " + e.getMax() + " per batch");
+    }
+
 
 }
@@ -1,19 +1,40 @@
 package fr.univcotedazur.simpletcfs.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import fr.univcotedazur.simpletcfs.dto.OrderDTO;
+import fr.univcotedazur.simpletcfs.dto.OrderStatusEvent;
 import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
 import fr.univcotedazur.simpletcfs.exceptions.OrderIdNotFoundException;
 import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusListener;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusTracker;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Optional;
 
 import static fr.univcotedazur.simpletcfs.controllers.OrderController.BASE_URI;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 @RestController
 @RequestMapping(path = BASE_URI, produces = APPLICATION_JSON_VALUE)
@@ -21,17 +42,61 @@ public class OrderController {
 
     public static final String BASE_URI = "/orders";
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final OrderFinder orderFinder;
 
+    private final OrderStatusTracker statusTracker;
+
+    private final ObjectWriter orderWriter;
+
+    private final long eventsTimeout; // ms, then the client reconnects
+
     @Autowired
-    public OrderController(OrderFinder orderFinder) {
+    public OrderController(OrderFinder orderFinder, OrderStatusTracker statusTracker, ObjectMapper objectMapper,
+                           @Value("${orders.events.timeout-ms:1800000}") long eventsTimeout) {
         this.orderFinder = orderFinder;
+        this.statusTracker = statusTracker;
+        this.orderWriter = objectMapper.writerFor(OrderDTO.class);
+        this.eventsTimeout = eventsTimeout;
     }
 
-    // Should be paginated
+    // Keyset pagination: GET /orders?after=<last id of the previous page>&limit=<page size>
+    // a full page comes with a "next" link, the last page is the first one that is not full
     @GetMapping
-    public List<OrderDTO> listAllOrders() {
-        return orderFinder.findAll().stream().map(OrderController::convertOrderToDto).toList();
+    public ResponseEntity<List<OrderDTO>> listOrders(@RequestParam(defaultValue = "0") Long after,
+                                                     @RequestParam(defaultValue = "100") @Min(1) @Max(MAX_PAGE_SIZE) int limit) {
+        List<OrderDTO> page = orderFinder.findPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == limit) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.getLast().id())
+                    .replaceQueryParam("limit", limit)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page);
+    }
+
+    // All orders as newline-delimited JSON (Accept: application/x-ndjson), written while they are read from the DB:
+    // the memory used does not depend on the number of orders
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllOrders() {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                orderFinder.forEachOrder(order -> {
+                    try {
+                        outputStream.write(orderWriter.writeValueAsBytes(order));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e); // e.g. the client went away, stops the DB cursor
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/{orderId}")
@@ -44,6 +109,81 @@ public class OrderController {
         return orderFinder.retrieveOrderStatus(orderId).toString();
     }
 
+    // Server-Sent Events (Accept: text/event-stream) instead of polling the status: the current status of the order, then
+    // its changes until it is READY. The request thread is released at once (async request), and the changes are pushed
+    // by the OrderStatusTracker: an idle stream only holds its connection. An unknown order is a 404 without body (an
+    // ErrorDTO cannot be written as an event stream)
+    @GetMapping(path = "/{orderId}/events", produces = TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> followAnOrder(@PathVariable Long orderId) {
+        SseEmitter emitter = new SseEmitter(eventsTimeout);
+        StatusStream listener = new StatusStream(emitter, true);
+        statusTracker.subscribe(orderId, listener); // before reading the status, so that no change is missed
+        Optional<Order> order = orderFinder.findById(orderId);
+        if (order.isEmpty()) {
+            statusTracker.unsubscribe(orderId, listener);
+            return ResponseEntity.notFound().build();
+        }
+        emitter.onCompletion(() -> statusTracker.unsubscribe(orderId, listener)); // also on timeouts and network errors
+        listener.accept(new OrderStatusEvent(orderId, order.get().getCustomer().getId(), order.get().getStatus()));
+        return ResponseEntity.ok(emitter);
+    }
+
+    // the status changes of all the orders, as Server-Sent Events
+    @GetMapping(path = "/events", produces = TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter followAllOrders() {
+        SseEmitter emitter = new SseEmitter(eventsTimeout);
+        OrderStatusListener listener = new StatusStream(emitter, false);
+        statusTracker.subscribeAll(listener);
+        emitter.onCompletion(() -> statusTracker.unsubscribeAll(listener));
+        return emitter;
+    }
+
+    // The stream of an order (untilReady, completed by its READY status) or of all the orders. The first status of an
+    // order and its changes may be sent concurrently, in any order: a status that is not later than the last one sent is
+    // skipped (e.g. the first status read before a change, but sent after it), and nothing is sent once completed
+    private static final class StatusStream implements OrderStatusListener {
+
+        private final SseEmitter emitter;
+
+        private final boolean untilReady;
+
+        private OrderStatus lastSent; // guarded by this, for the stream of an order
+
+        private boolean completed; // guarded by this
+
+        private StatusStream(SseEmitter emitter, boolean untilReady) {
+            this.emitter = emitter;
+            this.untilReady = untilReady;
+        }
+
+        @Override
+        public synchronized void accept(OrderStatusEvent event) {
+            if (completed || untilReady && lastSent != null && event.status().compareTo(lastSent) <= 0)
+                return;
+            try {
+                emitter.send(SseEmitter.event().name("status").data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException e) { // the client went away, the listener is then unsubscribed
+                throw new UncheckedIOException(e);
+            } catch (IllegalStateException e) { // completed meanwhile (e.g. timed out), unsubscribed on completion
+                completed = true;
+                return;
+            }
+            lastSent = event.status();
+            if (untilReady && event.status() == OrderStatus.READY)
+                complete();
+        }
+
+        @Override
+        public synchronized void dropped() { // a change was missed: the client reconnects, then gets the current status
+            complete();
+        }
+
+        private void complete() {
+            completed = true;
+            emitter.complete();
+        }
+    }
+
     public static OrderDTO convertOrderToDto(Order order) { // In more complex cases, we could use a ModelMapper such as MapStruct
         return new OrderDTO(order.getId(), order.getCustomer().getId(), order.getPrice(), order.getPayReceiptId(), order.getStatus());
     }
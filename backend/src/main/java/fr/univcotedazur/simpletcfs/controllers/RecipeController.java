@@ -1,12 +1,35 @@
 package fr.univcotedazur.simpletcfs.controllers;
 
-import fr.univcotedazur.simpletcfs.entities.Cookies;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univcotedazur.simpletcfs.dto.ErrorDTO;
+import fr.univcotedazur.simpletcfs.dto.RecipeDTO;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.PositiveMoney;
+import fr.univcotedazur.simpletcfs.exceptions.InvalidSearchPatternException;
+import fr.univcotedazur.simpletcfs.exceptions.UnknownRecipeException;
 import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
+import fr.univcotedazur.simpletcfs.interfaces.CatalogModifier;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
@@ -15,15 +38,85 @@ public class RecipeController {
 
     public static final String BASE_URI = "/recipes";
 
+    // shared caches (CDN) and clients may reuse the catalog for this duration, then revalidate it with its ETag
+    public static final CacheControl CATALOG_CACHE_CONTROL = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+
     private final CatalogExplorator catalogExp;
 
+    private final CatalogModifier catalogMod;
+
+    private final ObjectMapper objectMapper;
+
+    private volatile CatalogSnapshot catalog; // built on the first request
+
     @Autowired
-    public RecipeController(CatalogExplorator catalogExp) {
+    public RecipeController(CatalogExplorator catalogExp, CatalogModifier catalogMod, ObjectMapper objectMapper) {
         this.catalogExp = catalogExp;
+        this.catalogMod = catalogMod;
+        this.objectMapper = objectMapper;
     }
 
+    // The recipe names only change with the catalog: they are serialized once per name set, with a strong ETag (hash of
+    // the JSON), and a conditional GET (If-None-Match) with this ETag is answered 304 without body by Spring MVC
     @GetMapping(path = RecipeController.BASE_URI, produces = APPLICATION_JSON_VALUE)
-    public Set<Cookies> listAllRecipes() {
-        return catalogExp.listPreMadeRecipes();
+    public ResponseEntity<byte[]> listAllRecipes() {
+        CatalogSnapshot snapshot = catalog;
+        Set<String> names = catalogExp.listPreMadeRecipes();
+        if (snapshot == null || snapshot.names() != names) { // the catalog shares the same set while the names are unchanged
+            snapshot = catalog = CatalogSnapshot.of(names, objectMapper);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(snapshot.eTag())
+                .cacheControl(CATALOG_CACHE_CONTROL)
+                .body(snapshot.json());
+    }
+
+    // GET /recipes?pattern=<regular expression on the cookie names>
+    @GetMapping(path = RecipeController.BASE_URI, params = "pattern", produces = APPLICATION_JSON_VALUE)
+    public Set<String> searchRecipes(@RequestParam String pattern) {
+        return catalogExp.exploreCatalogue(pattern);
+    }
+
+    // GET /recipes?prefix=<start of the cookie names>
+    @GetMapping(path = RecipeController.BASE_URI, params = "prefix", produces = APPLICATION_JSON_VALUE)
+    public List<RecipeDTO> findRecipesByPrefix(@RequestParam String prefix) {
+        return catalogExp.findByNamePrefix(prefix);
+    }
+
+    // GET /recipes?minPrice=<price>&maxPrice=<price> (bounds included)
+    @GetMapping(path = RecipeController.BASE_URI, params = {"minPrice", "maxPrice"}, produces = APPLICATION_JSON_VALUE)
+    public List<RecipeDTO> findRecipesByPrice(@RequestParam Money minPrice, @RequestParam Money maxPrice) {
+        return catalogExp.findByPriceRange(minPrice, maxPrice);
     }
+
+    @GetMapping(path = RecipeController.BASE_URI + "/{name}", produces = APPLICATION_JSON_VALUE)
+    public RecipeDTO getRecipe(@PathVariable("name") String name) throws UnknownRecipeException {
+        return catalogExp.findByName(name).orElseThrow(() -> new UnknownRecipeException(name));
+    }
+
+    // back-office: the new price applies to the next cart price computations (the orders keep their paid price)
+    @PutMapping(path = RecipeController.BASE_URI + "/{name}/price", consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+    public RecipeDTO updatePrice(@PathVariable("name") String name, @RequestBody @PositiveMoney Money price) throws UnknownRecipeException {
+        return catalogMod.updatePrice(name, price);
+    }
+
+    @ExceptionHandler({PatternSyntaxException.class, InvalidSearchPatternException.class}) // invalid, too long or too complex pattern
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorDTO handleInvalidPattern(IllegalArgumentException e) {
+        return new ErrorDTO("Invalid search pattern", e.getMessage());
+    }
+
+    private record CatalogSnapshot(Set<String> names, byte[] json, String eTag) {
+
+        static CatalogSnapshot of(Set<String> names, ObjectMapper objectMapper) {
+            try {
+                byte[] json = objectMapper.writeValueAsBytes(names);
+                return new CatalogSnapshot(names, json, "\"" + DigestUtils.md5DigestAsHex(json) + "\"");
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,10 @@
+package fr.univcotedazur.simpletcfs.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+// Result of the validation of one cart in a batch checkout: either the order or the error is set
+public record CheckoutResultDTO (
+    @NotNull Long customerId,
+    OrderDTO order,
+    ErrorDTO error) {
+}
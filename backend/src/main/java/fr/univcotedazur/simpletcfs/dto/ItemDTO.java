@@ -0,0 +1,7 @@
+package fr.univcotedazur.simpletcfs.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+// Cart line as seen by the clients: the recipe by its name (the Item entity only stores the recipe id)
+public record ItemDTO (@NotBlank(message = "cookie should not be blank") String cookie, int quantity) {
+}
@@ -0,0 +1,9 @@
+package fr.univcotedazur.simpletcfs.dto;
+
+import fr.univcotedazur.simpletcfs.entities.Money;
+
+import java.util.Map;
+
+// payload of the ORDER_CREATED outbox events, sent once the order is paid
+public record OrderCreatedEvent(Long orderId, Long customerId, Map<Short, Integer> cookies, Money price) {
+}
@@ -1,14 +1,15 @@
 package fr.univcotedazur.simpletcfs.dto;
 
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.entities.PositiveMoney;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.Positive;
 
 public record OrderDTO (
     @NotNull Long id,
     @NotNull Long customerId,
-    @Positive double price,
+    @PositiveMoney Money price,
     @NotBlank String payReceiptId,
     @NotNull OrderStatus status) {
 }
@@ -0,0 +1,6 @@
+package fr.univcotedazur.simpletcfs.dto;
+
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+
+public record OrderStatusEvent(Long orderId, Long customerId, OrderStatus status) {
+}
@@ -0,0 +1,7 @@
+package fr.univcotedazur.simpletcfs.dto;
+
+import fr.univcotedazur.simpletcfs.entities.Money;
+
+// Immutable view of a Recipe, shared by all the readers of the in-memory catalog (and sent as is to the clients)
+public record RecipeDTO (Short id, String name, String label, Money price) {
+}
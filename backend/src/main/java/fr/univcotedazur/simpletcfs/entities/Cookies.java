@@ -1,20 +1,28 @@
 package fr.univcotedazur.simpletcfs.entities;
 
+// The recipes of the initial catalog, inserted as Recipe entities when the recipe table is empty (the catalog is then
+// read from the DB, and the prices below are only the initial ones)
 public enum Cookies {
 
-    CHOCOLALALA("Chocolalala", 1.30),
-    DARK_TEMPTATION("Dark Temptation", 1.90),
-    SOO_CHOCOLATE("Soo Chocolate", 1.25);
+    CHOCOLALALA((short) 1, "Chocolalala", Money.ofCents(130)),
+    DARK_TEMPTATION((short) 2, "Dark Temptation", Money.ofCents(190)),
+    SOO_CHOCOLATE((short) 3, "Soo Chocolate", Money.ofCents(125));
 
-    private String fullName;
-    private double price;
+    private final short id;
+    private final String fullName;
+    private final Money price;
 
-    Cookies(String fullName, double price) {
+    Cookies(short id, String fullName, Money price) {
+        this.id = id;
         this.fullName = fullName;
         this.price = price;
     }
 
-    public double getPrice() {
+    public short getId() {
+        return id;
+    }
+
+    public Money getPrice() {
         return price;
     }
 
@@ -22,4 +30,8 @@ public enum Cookies {
         return fullName;
     }
 
+    public Recipe toRecipe() {
+        return new Recipe(id, name(), fullName, price);
+    }
+
 }
@@ -3,20 +3,37 @@ package fr.univcotedazur.simpletcfs.entities;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Entity
+// the cart is lazy, only the cart operations load it (in the same query as the customer) with this graph
+@NamedEntityGraph(name = Customer.WITH_CART, attributeNodes = @NamedAttributeNode("cart"))
+// second-level cache regions (only used when the cache is enabled, see persistence.properties): the customer by id, the
+// id by name (natural id), and the cart. Read-write: a modified entry is locked until the commit, then replaced/evicted
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 public class Customer {
 
+    public static final String WITH_CART = "Customer.withCart";
+
     @Id
     @GeneratedValue
     private Long id; // Whether Long/Int or UUID are better primary keys, exposable outside is a vast issue, keep it simple here
 
     @NotBlank
     @Column(unique = true)
+    @NaturalId(mutable = true)
     private String name;
 
     @Pattern(regexp = "\\d{10}+", message = "Invalid creditCardNumber")
@@ -25,8 +42,13 @@ public class Customer {
     @OneToMany(cascade = {CascadeType.REMOVE}, fetch = FetchType.LAZY, mappedBy = "customer")
     private Set<Order> orders = new HashSet<>();
 
-    @ElementCollection(fetch = FetchType.EAGER)
-    private Set<Item> cart = new HashSet<>();
+    // quantity by recipe id: the (customer, recipe) pair is the key of the collection table, so that changing the quantity
+    // of a cookie is a single row insert, update or delete (instead of deleting and reinserting the whole cart)
+    @ElementCollection(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @MapKeyColumn(name = "recipe_id")
+    @Column(name = "quantity", nullable = false)
+    private Map<Short, Integer> cart = new HashMap<>();
 
     public Customer() {
     }
@@ -56,8 +78,11 @@ public class Customer {
         this.creditCard = creditCard;
     }
 
+    // the order owns the relationship: a lazy collection not loaded yet is left as is (adding to it would load all the
+    // past orders of the customer at each validation), it will contain the order once flushed
     public void addOrder(Order o) {
-        this.orders.add(o);
+        if (Hibernate.isInitialized(orders))
+            this.orders.add(o);
     }
 
     public Set<Order> getOrders() {
@@ -68,12 +93,33 @@ public class Customer {
             this.orders = orders;
     }
 
+    // a copy of the cart contents, use setQuantity to modify it
     public Set<Item> getCart() {
-        return cart;
+        return cart.entrySet().stream()
+                .map(line -> new Item(line.getKey(), line.getValue()))
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    public void setCart(Set<Item> items) {
+        this.cart.clear();
+        items.forEach(item -> setQuantity(item.getRecipeId(), item.getQuantity()));
+    }
+
+    public boolean isCartEmpty() {
+        return cart.isEmpty();
+    }
+
+    public int getQuantity(short recipeId) {
+        return cart.getOrDefault(recipeId, 0);
     }
 
-    public void setCart(Set<Item> cart) {
-        this.cart = cart;
+    // a zero quantity removes the recipe from the cart
+    public void setQuantity(short recipeId, int quantity) {
+        if (quantity == 0) {
+            cart.remove(recipeId);
+        } else {
+            cart.put(recipeId, quantity);
+        }
     }
 
     public void clearCart() {
@@ -1,34 +1,30 @@
 package fr.univcotedazur.simpletcfs.entities;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Embeddable;
-import jakarta.persistence.EnumType;
-import jakarta.persistence.Enumerated;
-import jakarta.validation.constraints.NotNull;
 
 import java.util.Objects;
 
 @Embeddable
 public class Item {
 
-    @Enumerated(EnumType.STRING)
-    @NotNull
-    private Cookies cookie;
+    @Column(name = "recipe_id")
+    private short recipeId; // Recipe id (not an association: the recipes are read from the in-memory catalog)
 
-    @NotNull
     private int quantity;
 
     public Item() {}
 
-    public Item(Cookies cookie, int quantity) {
-        this.cookie = cookie;
+    public Item(short recipeId, int quantity) {
+        this.recipeId = recipeId;
         this.quantity = quantity;
     }
 
-    public Cookies getCookie() {
-        return cookie;
+    public short getRecipeId() {
+        return recipeId;
     }
-    public void setCookie(Cookies cookie) {
-        this.cookie = cookie;
+    public void setRecipeId(short recipeId) {
+        this.recipeId = recipeId;
     }
 
     public int getQuantity() {
@@ -39,18 +35,18 @@ public class Item {
     }
 
     @Override
-    public String toString() { return quantity + "x" + cookie.toString(); }
+    public String toString() { return quantity + "x#" + recipeId; }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Item)) return false;
         Item item = (Item) o;
-        return quantity == item.quantity && cookie == item.cookie;
+        return quantity == item.quantity && recipeId == item.recipeId;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(cookie, quantity);
+        return Objects.hash(recipeId, quantity);
     }
 }
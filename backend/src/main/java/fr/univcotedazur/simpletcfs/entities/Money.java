@@ -0,0 +1,61 @@
+package fr.univcotedazur.simpletcfs.entities;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Exact amount of money, as a number of cents: totals are plain long additions and multiplications (no rounding error,
+// no boxing). It is stored as a BIGINT of cents (MoneyConverter), and sent in JSON as a decimal number (e.g. 1.30)
+public record Money(long cents) implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    public static Money ofCents(long cents) {
+        return new Money(cents);
+    }
+
+    // exact conversion, an amount with a fraction of cent is rejected
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money of(BigDecimal amount) {
+        try {
+            return new Money(amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not an amount in cents: " + amount, e);
+        }
+    }
+
+    // used by Spring to convert request parameters (e.g. ?minPrice=1.5)
+    public static Money valueOf(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(cents, other.cents));
+    }
+
+    public Money times(long quantity) {
+        return new Money(Math.multiplyExact(cents, quantity));
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+}
@@ -0,0 +1,20 @@
+package fr.univcotedazur.simpletcfs.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Applied to all the Money attributes of the entities, stored as a number of cents
+@Converter(autoApply = true)
+public class MoneyConverter implements AttributeConverter<Money, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Money money) {
+        return money == null ? null : money.cents();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(Long cents) {
+        return cents == null ? null : Money.ofCents(cents);
+    }
+
+}
@@ -1,16 +1,19 @@
 package fr.univcotedazur.simpletcfs.entities;
 
 import jakarta.persistence.*;
-import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Pattern;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
 @Entity
-@Table(name= "orders")
+// the schema is created by the Flyway migrations (db/migration), the index is declared here to be visible on the mapping
+@Table(name= "orders", indexes = {
+        @Index(name = "orders_customer_status_id_idx", columnList = "customer_id, status, id"),
+        @Index(name = "orders_status_reserved_at_idx", columnList = "status, reserved_at")})
 public class Order {
 
     @Id
@@ -24,17 +27,20 @@ public class Order {
     @ElementCollection
     private Set<Item> items;
 
-    @Positive
-    private double price;
+    @NotNull
+    @PositiveMoney
+    private Money price; // stored in cents
 
-    @NotBlank
+    @Pattern(regexp = ".*\\S.*") // not blank, but null while the order is PAYMENT_PENDING
     private String payReceiptId;
 
     @Enumerated(EnumType.STRING)
     @NotNull
     private OrderStatus status;
 
-    public Order(Customer customer, Set<Item> items, double price, String payReceiptId) {
+    private Instant reservedAt; // null unless the order was reserved before its payment (PAYMENT_PENDING)
+
+    public Order(Customer customer, Set<Item> items, Money price, String payReceiptId) {
         this.customer = customer;
         this.items = new HashSet<>(items);
         this.price = price;
@@ -46,7 +52,7 @@ public class Order {
     public Order() {
     }
 
-    public double getPrice() {
+    public Money getPrice() {
         return price;
     }
 
@@ -66,6 +72,14 @@ public class Order {
         this.status = status;
     }
 
+    public Instant getReservedAt() {
+        return reservedAt;
+    }
+
+    public void setReservedAt(Instant reservedAt) {
+        this.reservedAt = reservedAt;
+    }
+
     public Long getId() {
         return id;
     }
@@ -1,8 +1,8 @@
 package fr.univcotedazur.simpletcfs.entities;
 
-// MVP no use of the READY status
+// In lifecycle order (compared by the order status streams): reserved, paid, in the kitchen, baked
 public enum OrderStatus {
 
-    VALIDATED, IN_PROGRESS, READY
+    PAYMENT_PENDING, VALIDATED, IN_PROGRESS, READY
 
 }
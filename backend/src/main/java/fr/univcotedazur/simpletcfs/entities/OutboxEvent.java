@@ -0,0 +1,71 @@
+package fr.univcotedazur.simpletcfs.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.Instant;
+
+// An event waiting for its delivery by the Outbox relay, written in the transaction of the change it describes
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue
+    private Long id; // increasing, the events are delivered by id
+
+    @NotBlank
+    private String type;
+
+    @NotNull
+    private Long aggregateId; // e.g. the order id
+
+    @NotBlank
+    @Column(length = 4000)
+    private String payload; // JSON
+
+    @NotNull
+    private Instant createdAt;
+
+    private int attempts; // failed deliveries
+
+    public OutboxEvent(String type, Long aggregateId, String payload) {
+        this.type = type;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = Instant.now();
+    }
+
+    public OutboxEvent() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getAggregateId() {
+        return aggregateId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+}
@@ -0,0 +1,76 @@
+package fr.univcotedazur.simpletcfs.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import org.hibernate.annotations.NaturalId;
+
+import java.util.Objects;
+
+@Entity
+public class Recipe {
+
+    @Id
+    private Short id; // compact id, referenced by the items of the carts and orders (assigned by the Catalog)
+
+    @NaturalId
+    @NotBlank
+    @Pattern(regexp = "[A-Z][A-Z0-9_]*") // the name used in the API, e.g. CHOCOLALALA
+    private String name;
+
+    @NotBlank
+    private String label; // e.g. Chocolalala
+
+    @NotNull
+    @PositiveMoney
+    private Money price; // stored in cents
+
+    public Recipe() {
+    }
+
+    public Recipe(@NotNull Short id, String name, String label, Money price) {
+        this.id = id;
+        this.name = name;
+        this.label = label;
+        this.price = price;
+    }
+
+    public Short getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public Money getPrice() {
+        return price;
+    }
+
+    public void setPrice(Money price) {
+        this.price = price;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Recipe recipe)) return false;
+        return Objects.equals(name, recipe.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name);
+    }
+
+}
@@ -0,0 +1,11 @@
+package fr.univcotedazur.simpletcfs.exceptions;
+
+// a catalog search pattern that is refused before or while being evaluated (too long, too complex), unchecked as the
+// PatternSyntaxException of an invalid pattern
+public class InvalidSearchPatternException extends IllegalArgumentException {
+
+    public InvalidSearchPatternException(String message) {
+        super(message);
+    }
+
+}
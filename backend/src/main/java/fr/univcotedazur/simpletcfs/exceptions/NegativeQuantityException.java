@@ -1,11 +1,9 @@
 package fr.univcotedazur.simpletcfs.exceptions;
 
-import fr.univcotedazur.simpletcfs.entities.Cookies;
-
 public class NegativeQuantityException extends Exception {
 
     private String name;
-    private Cookies cookie;
+    private String cookie; // recipe name
     private int potentialQuantity;
 
     public String getName() {
@@ -16,11 +14,11 @@ public class NegativeQuantityException extends Exception {
         this.name = name;
     }
 
-    public Cookies getCookie() {
+    public String getCookie() {
         return cookie;
     }
 
-    public void setCookie(Cookies cookie) {
+    public void setCookie(String cookie) {
         this.cookie = cookie;
     }
 
@@ -35,7 +33,7 @@ public class NegativeQuantityException extends Exception {
     public NegativeQuantityException() {
     }
 
-    public NegativeQuantityException(String name, Cookies cookie, int potentialQuantity) {
+    public NegativeQuantityException(String name, String cookie, int potentialQuantity) {
         this.name = name;
         this.cookie = cookie;
         this.potentialQuantity = potentialQuantity;
@@ -1,11 +1,13 @@
 package fr.univcotedazur.simpletcfs.exceptions;
 
+import fr.univcotedazur.simpletcfs.entities.Money;
+
 public class PaymentException extends Exception {
 
     private String name;
-    private double amount;
+    private Money amount;
 
-    public PaymentException(String customerName, double amount) {
+    public PaymentException(String customerName, Money amount) {
         this.name = customerName;
         this.amount = amount;
     }
@@ -21,11 +23,11 @@ public class PaymentException extends Exception {
         this.name = name;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
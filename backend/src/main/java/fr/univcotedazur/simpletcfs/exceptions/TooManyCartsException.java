@@ -0,0 +1,33 @@
+package fr.univcotedazur.simpletcfs.exceptions;
+
+public class TooManyCartsException extends Exception {
+
+    private int count;
+
+    private int max;
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public void setMax(int max) {
+        this.max = max;
+    }
+
+    public TooManyCartsException() {
+    }
+
+    public TooManyCartsException(int count, int max) {
+        this.count = count;
+        this.max = max;
+    }
+
+}
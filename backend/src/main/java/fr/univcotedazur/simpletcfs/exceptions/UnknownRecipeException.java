@@ -0,0 +1,22 @@
+package fr.univcotedazur.simpletcfs.exceptions;
+
+public class UnknownRecipeException extends Exception {
+
+    private String name;
+
+    public UnknownRecipeException(String name) {
+        this.name = name;
+    }
+
+    public UnknownRecipeException() {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+}
@@ -1,10 +1,21 @@
 package fr.univcotedazur.simpletcfs.interfaces;
 
+import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentRequestDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface Bank {
 
-    Optional<String> pay(Customer customer, double value);
+    Optional<String> pay(Customer customer, Money value);
+
+    // non-blocking variant, the future is completed when the bank answers (empty optional if the payment is rejected)
+    CompletableFuture<Optional<String>> payAsync(Customer customer, Money value);
+
+    // several payments in as few requests as possible, one future per payment in the same order: its receipt, empty if
+    // the payment is rejected, or failed when its outcome is unknown (e.g. its batch timed out, the bank may have paid it)
+    List<CompletableFuture<Optional<String>>> payAll(List<PaymentRequestDTO> payments);
 }
@@ -1,14 +1,26 @@
 package fr.univcotedazur.simpletcfs.interfaces;
 
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.entities.Order;
 import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
 import fr.univcotedazur.simpletcfs.exceptions.EmptyCartException;
 import fr.univcotedazur.simpletcfs.exceptions.PaymentException;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 public interface CartProcessor {
 
-    double cartPrice(Long customerId) throws CustomerIdNotFoundException;
+    Money cartPrice(Long customerId) throws CustomerIdNotFoundException;
 
     Order validate(Long customerId) throws PaymentException, EmptyCartException, CustomerIdNotFoundException;
 
+    // the returned future is completed exceptionally with a PaymentException if the payment is rejected
+    CompletableFuture<Order> validateAsync(Long customerId) throws EmptyCartException, CustomerIdNotFoundException;
+
+    // validates several carts together, one future per (distinct) customer id, in the given order, completed with the
+    // order or with the exception validate would have thrown for this customer
+    Map<Long, CompletableFuture<Order>> validateAll(List<Long> customerIds);
+
 }
@@ -1,14 +1,24 @@
 package fr.univcotedazur.simpletcfs.interfaces;
 
-import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.dto.RecipeDTO;
+import fr.univcotedazur.simpletcfs.entities.Money;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 public interface CatalogExplorator {
 
-    Set<Cookies> listPreMadeRecipes();
+    Set<String> listPreMadeRecipes();
 
-    Set<Cookies> exploreCatalogue(String regexp);
+    Set<String> exploreCatalogue(String regexp);
 
-}
+    Optional<RecipeDTO> findById(short id);
+
+    Optional<RecipeDTO> findByName(String name);
+
+    List<RecipeDTO> findByNamePrefix(String prefix); // sorted by name
 
+    List<RecipeDTO> findByPriceRange(Money minPrice, Money maxPrice); // bounds included, sorted by price
+
+}
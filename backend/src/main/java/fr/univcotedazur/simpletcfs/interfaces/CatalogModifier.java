@@ -0,0 +1,14 @@
+package fr.univcotedazur.simpletcfs.interfaces;
+
+import fr.univcotedazur.simpletcfs.dto.RecipeDTO;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.exceptions.UnknownRecipeException;
+
+public interface CatalogModifier {
+
+    RecipeDTO updatePrice(String name, Money price) throws UnknownRecipeException;
+
+    // reads all the recipes from the DB again, e.g. after they were written directly in the DB or by another instance
+    void reload();
+
+}
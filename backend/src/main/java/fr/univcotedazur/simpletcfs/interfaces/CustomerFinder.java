@@ -1,10 +1,13 @@
 package fr.univcotedazur.simpletcfs.interfaces;
 
+import fr.univcotedazur.simpletcfs.dto.CustomerDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
 import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface CustomerFinder {
 
@@ -14,6 +17,19 @@ public interface CustomerFinder {
 
     Customer retrieveCustomer(Long customerId) throws CustomerIdNotFoundException;
 
+    // same as retrieveCustomer, the (lazy) cart being loaded with the customer
+    Customer retrieveCustomerWithCart(Long customerId) throws CustomerIdNotFoundException;
+
+    Optional<Customer> findWithCartById(Long id);
+
     List<Customer> findAll();
 
+    List<Customer> findAllWithCartById(Collection<Long> ids);
+
+    // at most limit customers with an id greater than after, by increasing id
+    List<CustomerDTO> findPage(Long after, int limit);
+
+    // all customers by increasing id, read from a DB cursor
+    void forEachCustomer(Consumer<CustomerDTO> action);
+
 }
@@ -2,8 +2,7 @@ package fr.univcotedazur.simpletcfs.interfaces;
 
 import fr.univcotedazur.simpletcfs.entities.Order;
 
-// very partial vision, the OrderStatus cannot properly make progress
-// MVP just to set the order from VALIDATED to IN_PROGRESS
+// sets the order from VALIDATED to IN_PROGRESS, the kitchen then makes it READY once baked
 public interface OrderCooking {
 
     Order processInKitchen(Order order);
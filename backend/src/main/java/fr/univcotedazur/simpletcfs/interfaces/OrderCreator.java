@@ -1,11 +1,16 @@
 package fr.univcotedazur.simpletcfs.interfaces;
 
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.entities.Order;
 
 
 public interface OrderCreator {
 
-        Order createOrder(Customer customer, double price, String payReceiptId);
+        Order createOrder(Customer customer, Money price, String payReceiptId);
+
+        Order reserveOrder(Customer customer, Money price);
+
+        void cancelReservedOrder(Long orderId);
 
 }
@@ -0,0 +1,17 @@
+package fr.univcotedazur.simpletcfs.interfaces;
+
+import fr.univcotedazur.simpletcfs.dto.OrderCreatedEvent;
+
+import java.util.List;
+import java.util.Set;
+
+// Delivered at least once, by batches in creation order: an event may be delivered again after a failure, its
+// consumers must ignore the events they already got. Throwing is a delivery failure, counted against the attempts of the
+// events (see Outbox). A consumer that cannot take more events for now (backpressure) returns them instead, and must not
+// block for it: they are delivered again later, as many times as needed.
+public interface OrderEventConsumer {
+
+    // the order ids of the events not accepted yet
+    Set<Long> ordersCreated(List<OrderCreatedEvent> events);
+
+}
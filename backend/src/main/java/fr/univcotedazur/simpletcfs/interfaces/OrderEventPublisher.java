@@ -0,0 +1,10 @@
+package fr.univcotedazur.simpletcfs.interfaces;
+
+import fr.univcotedazur.simpletcfs.entities.Order;
+
+// the events are published within the transaction of the order, and delivered after its commit
+public interface OrderEventPublisher {
+
+    void orderCreated(Order order);
+
+}
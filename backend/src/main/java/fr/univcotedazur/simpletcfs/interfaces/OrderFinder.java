@@ -1,11 +1,15 @@
 package fr.univcotedazur.simpletcfs.interfaces;
 
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
 import fr.univcotedazur.simpletcfs.entities.Order;
 import fr.univcotedazur.simpletcfs.entities.OrderStatus;
 import fr.univcotedazur.simpletcfs.exceptions.OrderIdNotFoundException;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface OrderFinder {
 
@@ -13,6 +17,24 @@ public interface OrderFinder {
 
     List<Order> findAll();
 
+    // at most limit orders with an id greater than after, by increasing id
+    List<OrderDTO> findPage(Long after, int limit);
+
+    // all orders by increasing id, without keeping them in memory
+    void forEachOrder(Consumer<OrderDTO> action);
+
+    // by increasing id
+    List<Order> findByStatus(OrderStatus status);
+
+    // at most limit orders of the customer in the status, with an id greater than after, by increasing id
+    List<OrderDTO> findPageForCustomerWithStatus(Long customerId, OrderStatus status, Long after, int limit);
+
+    // the ids of the orders PAYMENT_PENDING that are paid (receipt kept) or were reserved before reservedBefore
+    List<Long> findStaleReservationIds(Instant reservedBefore, int limit);
+
+    // the ids of the given orders that are in the status
+    List<Long> findIdsWithStatus(Collection<Long> orderIds, OrderStatus status);
+
     Order retrieveOrder(Long orderId) throws OrderIdNotFoundException;
 
     OrderStatus retrieveOrderStatus(Long orderId) throws OrderIdNotFoundException;
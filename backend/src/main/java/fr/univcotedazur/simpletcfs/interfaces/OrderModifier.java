@@ -2,9 +2,23 @@ package fr.univcotedazur.simpletcfs.interfaces;
 
 import fr.univcotedazur.simpletcfs.entities.Order;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 public interface OrderModifier {
 
+    Order orderIsPaid(Long orderId, String payReceiptId);
+
+    List<Order> ordersArePaid(Map<Long, String> payReceiptIdsByOrderId);
+
+    // the receipts are kept on the orders still PAYMENT_PENDING (the others are ignored), which stay in this status
+    List<Order> paymentsReceived(Map<Long, String> payReceiptIdsByOrderId);
+
     Order orderIsNowInProgress(Order order);
 
     Order orderIsNowReady(Order order);
+
+    // the orders still in progress among the given ones (the others are ignored)
+    List<Order> ordersAreReady(Collection<Long> orderIds);
 }
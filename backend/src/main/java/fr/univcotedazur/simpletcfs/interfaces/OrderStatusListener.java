@@ -0,0 +1,15 @@
+package fr.univcotedazur.simpletcfs.interfaces;
+
+import fr.univcotedazur.simpletcfs.dto.OrderStatusEvent;
+
+import java.util.function.Consumer;
+
+// A subscriber of the order status changes (OrderStatusTracker), called with each change
+public interface OrderStatusListener extends Consumer<OrderStatusEvent> {
+
+    // called instead when a change could not be delivered (too many waiting deliveries), the listener being unsubscribed:
+    // it missed a change, e.g. its stream is closed so that the client reconnects. Must not block either
+    default void dropped() {
+    }
+
+}
@@ -0,0 +1,10 @@
+package fr.univcotedazur.simpletcfs.interfaces;
+
+import fr.univcotedazur.simpletcfs.entities.Order;
+
+// the new status of the order is notified once its transaction is committed (at once outside a transaction)
+public interface OrderStatusNotifier {
+
+    void statusChanged(Order order);
+
+}
@@ -0,0 +1,16 @@
+package fr.univcotedazur.simpletcfs.interfaces;
+
+// The listeners are called on the few delivery threads of the tracker, and must not block for long: a slow one delays the
+// others. A listener throwing an exception is unsubscribed.
+public interface OrderStatusTracker {
+
+    void subscribe(Long orderId, OrderStatusListener listener);
+
+    void unsubscribe(Long orderId, OrderStatusListener listener);
+
+    // the changes of all the orders
+    void subscribeAll(OrderStatusListener listener);
+
+    void unsubscribeAll(OrderStatusListener listener);
+
+}
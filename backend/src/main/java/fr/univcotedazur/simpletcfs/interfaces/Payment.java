@@ -1,11 +1,33 @@
 package fr.univcotedazur.simpletcfs.interfaces;
 
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.entities.Order;
 import fr.univcotedazur.simpletcfs.exceptions.PaymentException;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 public interface Payment {
 
-    Order payOrderFromCart(Customer customer, double price) throws PaymentException;
+    Order payOrderFromCart(Customer customer, Money price) throws PaymentException;
+
+    // Payment split in three steps so that no transaction is kept open while waiting for the bank
+    Order reserveOrderFromCart(Customer customer, Money price);
+
+    CompletableFuture<String> payReservedOrder(Order reservedOrder);
+
+    // one future per order, in the same order
+    List<CompletableFuture<String>> payReservedOrders(List<Order> reservedOrders);
+
+    Order confirmReservedOrder(Long orderId, String payReceiptId);
+
+    List<Order> confirmReservedOrders(Map<Long, String> payReceiptIdsByOrderId);
+
+    void cancelReservedOrder(Long orderId);
+
+    // when their confirmation failed: the receipts are kept on the reserved orders, to be confirmed later
+    List<Order> recordReservedOrderPayments(Map<Long, String> payReceiptIdsByOrderId);
 
 }
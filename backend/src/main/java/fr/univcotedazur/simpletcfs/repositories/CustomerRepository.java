@@ -1,14 +1,42 @@
 package fr.univcotedazur.simpletcfs.repositories;
 
+import fr.univcotedazur.simpletcfs.dto.CustomerDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
 
     Optional<Customer> findCustomerByName(String name);
 
+    // Listings project the selected columns directly into the DTO (constructor expression): no Customer entity is
+    // managed, so neither the cart nor the persistence context are involved
+    @Query("SELECT new fr.univcotedazur.simpletcfs.dto.CustomerDTO(c.id, c.name, c.creditCard) FROM Customer c WHERE c.id > :after ORDER BY c.id")
+    List<CustomerDTO> findCustomerDTOsAfter(@Param("after") Long after, Limit limit); // keyset pagination, as for orders
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new fr.univcotedazur.simpletcfs.dto.CustomerDTO(c.id, c.name, c.creditCard) FROM Customer c ORDER BY c.id")
+    Stream<CustomerDTO> streamAllCustomerDTOs();
+
+    // The cart being lazy, the cart operations use these methods to load the customer and the cart in a single query
+    @EntityGraph(Customer.WITH_CART)
+    Optional<Customer> findWithCartById(Long id);
+
+    // a single query for all customers and their carts, instead of one query per customer and per cart
+    @EntityGraph(Customer.WITH_CART)
+    List<Customer> findAllWithCartByIdIn(Collection<Long> ids);
+
 }
@@ -1,15 +1,23 @@
 package fr.univcotedazur.simpletcfs.repositories;
 
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
 import fr.univcotedazur.simpletcfs.entities.Order;
 import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -20,4 +28,38 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
             @Param("status") OrderStatus state,
             Sort sort);
 
+    // "my orders in status X": only the OrderDTO columns (no Order entity managed, neither its customer nor its items),
+    // by keyset pages, read through the (customer_id, status, id) index
+    @Query("SELECT new fr.univcotedazur.simpletcfs.dto.OrderDTO(o.id, o.customer.id, o.price, o.payReceiptId, o.status) FROM Order o " +
+            "WHERE o.customer.id = :customerId AND o.status = :status AND o.id > :after ORDER BY o.id")
+    List<OrderDTO> findOrderDTOsForCustomerWithStatus(@Param("customerId") Long customerId, @Param("status") OrderStatus status,
+                                                      @Param("after") Long after, Limit limit);
+
+    // Listings project the OrderDTO columns (the customer id being the foreign key column): no Order entity is managed,
+    // so neither its eager customer (one select per customer) nor the persistence context are involved.
+    // Keyset pagination: a page starts after the last id of the previous one, using the primary key index instead of
+    // counting and skipping the rows of the previous pages (OFFSET)
+    @Query("SELECT new fr.univcotedazur.simpletcfs.dto.OrderDTO(o.id, o.customer.id, o.price, o.payReceiptId, o.status) FROM Order o " +
+            "WHERE o.id > :after ORDER BY o.id")
+    List<OrderDTO> findOrderDTOsAfter(@Param("after") Long after, Limit limit);
+
+    List<Order> findByStatusOrderByIdAsc(OrderStatus status);
+
+    // rows are fetched by chunks from a DB cursor (the stream must be consumed and closed within a transaction)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new fr.univcotedazur.simpletcfs.dto.OrderDTO(o.id, o.customer.id, o.price, o.payReceiptId, o.status) FROM Order o ORDER BY o.id")
+    Stream<OrderDTO> streamAllOrderDTOs();
+
+    // the ids of the orders left in the status: with a receipt (paid, confirmation to retry), or reserved before the
+    // given instant, read through the (status, reserved_at) index
+    @Query("SELECT o.id FROM Order o WHERE o.status = :status AND (o.payReceiptId IS NOT NULL OR o.reservedAt < :reservedBefore) ORDER BY o.id")
+    List<Long> findIdsToRecover(@Param("status") OrderStatus status, @Param("reservedBefore") Instant reservedBefore, Limit limit);
+
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :ids AND o.status = :status")
+    List<Long> findIdsByIdInAndStatus(@Param("ids") Collection<Long> ids, @Param("status") OrderStatus status);
+
+    // orders with their (eager) customer in a single query
+    @Query("SELECT o FROM Order o JOIN FETCH o.customer c LEFT JOIN FETCH c.cart WHERE o.id IN :ids")
+    List<Order> findAllWithCustomerByIdIn(@Param("ids") Collection<Long> ids);
+
 }
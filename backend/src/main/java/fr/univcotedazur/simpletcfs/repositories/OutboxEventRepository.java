@@ -0,0 +1,36 @@
+package fr.univcotedazur.simpletcfs.repositories;
+
+import fr.univcotedazur.simpletcfs.entities.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // the oldest events, read through the primary key (the ones given up are moved to outbox_dead_event)
+    List<OutboxEvent> findByOrderByIdAsc(Limit limit);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1 WHERE e.id IN :ids")
+    int incrementAttempts(@Param("ids") Collection<Long> ids);
+
+    // Dead letters: the events given up after maxAttempts failed deliveries are copied to outbox_dead_event (a table
+    // without entity, kept for inspection and replay by the operators), then deleted
+    @Modifying
+    @Query(value = "INSERT INTO outbox_dead_event (id, type, aggregate_id, payload, created_at, attempts, dead_at) " +
+            "SELECT id, type, aggregate_id, payload, created_at, attempts, CURRENT_TIMESTAMP FROM outbox_event " +
+            "WHERE id IN :ids AND attempts >= :maxAttempts", nativeQuery = true)
+    int copyToDeadEvents(@Param("ids") Collection<Long> ids, @Param("maxAttempts") int maxAttempts);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.id IN :ids AND e.attempts >= :maxAttempts")
+    int deleteGivenUp(@Param("ids") Collection<Long> ids, @Param("maxAttempts") int maxAttempts);
+
+}
@@ -0,0 +1,14 @@
+package fr.univcotedazur.simpletcfs.repositories;
+
+import fr.univcotedazur.simpletcfs.entities.Recipe;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RecipeRepository extends JpaRepository<Recipe, Short> {
+
+    Optional<Recipe> findRecipeByName(String name);
+
+}
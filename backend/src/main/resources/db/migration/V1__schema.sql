@@ -0,0 +1,60 @@
+-- Initial schema of the Flyway-managed databases. It differs from the one formerly generated by Hibernate
+-- (spring.jpa.generate-ddl): such a database is not baselined at this version, Flyway refuses it (see persistence.properties)
+
+-- ids allocated by blocks of 50: the increment matches the allocation size of the entities (see persistence.properties)
+create sequence customer_seq start with 1 increment by 50;
+create sequence orders_seq start with 1 increment by 50;
+create sequence outbox_event_seq start with 1 increment by 50;
+
+create table customer (
+    id bigint not null,
+    credit_card varchar(255),
+    name varchar(255) not null,
+    primary key (id),
+    constraint customer_name_key unique (name)
+);
+
+create table customer_cart (
+    quantity integer not null,
+    recipe_id smallint not null,
+    customer_id bigint not null,
+    primary key (recipe_id, customer_id)
+);
+
+create table order_items (
+    quantity integer,
+    recipe_id smallint,
+    order_id bigint not null
+);
+
+create table orders (
+    customer_id bigint not null,
+    id bigint not null,
+    price bigint not null,
+    pay_receipt_id varchar(255),
+    status varchar(255) not null check (status in ('PAYMENT_PENDING','VALIDATED','IN_PROGRESS','READY')),
+    primary key (id)
+);
+
+create table outbox_event (
+    attempts integer not null,
+    aggregate_id bigint not null,
+    created_at timestamp(6) with time zone not null,
+    id bigint not null,
+    payload varchar(4000) not null,
+    type varchar(255) not null,
+    primary key (id)
+);
+
+create table recipe (
+    id smallint not null,
+    price bigint not null,
+    label varchar(255) not null,
+    name varchar(255) not null,
+    primary key (id),
+    constraint recipe_name_key unique (name)
+);
+
+alter table customer_cart add constraint customer_cart_customer_fk foreign key (customer_id) references customer;
+alter table order_items add constraint order_items_order_fk foreign key (order_id) references orders;
+alter table orders add constraint orders_customer_fk foreign key (customer_id) references customer;
@@ -0,0 +1,11 @@
+-- Indexes of the read paths (customer(name) is already indexed by its unique constraint, for findCustomerByName)
+
+-- the orders of a customer in a given status (OrderRepository.findOrdersForCustomerWithStatus), and by customer only
+-- (customer deletion, orders_customer_fk)
+create index orders_customer_status_idx on orders (customer_id, status);
+
+-- the items of an order (loaded with the order, deleted with it)
+create index order_items_order_idx on order_items (order_id);
+
+-- the cart of a customer (loaded with the customer, cleared by a validation): the primary key starts with recipe_id
+create index customer_cart_customer_idx on customer_cart (customer_id);
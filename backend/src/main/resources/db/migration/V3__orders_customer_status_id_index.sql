@@ -0,0 +1,6 @@
+-- "my orders in status X" (OrderRepository.findOrderDTOsForCustomerWithStatus) reads the orders of a customer in a status
+-- by increasing id, after the last id of the previous page: with the id in the index, the matching entries are already
+-- sorted and a page starts with a single index seek, whatever the number of orders of the customer
+create index orders_customer_status_id_idx on orders (customer_id, status, id);
+-- same prefix, no longer needed
+drop index orders_customer_status_idx;
@@ -0,0 +1,5 @@
+-- Reservation time of the orders waiting for their payment: CartHandler.recoverStaleReservations confirms the ones that
+-- are paid and cancels the ones still without bank answer long after their reservation, both read through the
+-- (status, reserved_at) index (the few PAYMENT_PENDING orders among all the others)
+alter table orders add column reserved_at timestamp(6) with time zone;
+create index orders_status_reserved_at_idx on orders (status, reserved_at);
@@ -0,0 +1,13 @@
+-- Events given up after outbox.relay.max-attempts failed deliveries (Outbox.relay): moved out of outbox_event, so that
+-- the relay reads only the events to deliver, through the primary key, instead of skipping the dead ones on every run.
+-- No entity maps this table, it is kept for inspection (and replay) by the operators
+create table outbox_dead_event (
+    attempts integer not null,
+    aggregate_id bigint not null,
+    created_at timestamp(6) with time zone not null,
+    dead_at timestamp(6) with time zone not null,
+    id bigint not null,
+    payload varchar(4000) not null,
+    type varchar(255) not null,
+    primary key (id)
+);
@@ -0,0 +1,72 @@
+package fr.univcotedazur.simpletcfs.aspects;
+
+import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentRequestDTO;
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.interfaces.Bank;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ComponentMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CompletableFuture<Optional<String>> payment = new CompletableFuture<>();
+
+    private Bank proxy(boolean classBased) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(new TestBank());
+        factory.setProxyTargetClass(classBased);
+        factory.addAspect(new ComponentMetrics(meterRegistry));
+        return factory.getProxy();
+    }
+
+    @Test
+    void callsAreTimedByInterfaceOutcomeAndException() {
+        for (boolean classBased : List.of(false, true)) {
+            Bank bank = proxy(classBased);
+            assertEquals(Optional.of("RECEIPT"), bank.pay(new Customer("john", "1234567890"), Money.ofCents(100)));
+            assertThrows(IllegalStateException.class, () -> bank.payAll(List.of()));
+        }
+        assertEquals(2, meterRegistry.get(ComponentMetrics.TIMER)
+                .tags("interface", "Bank", "method", "pay", "outcome", "success", "exception", "none").timer().count());
+        assertEquals(2, meterRegistry.get(ComponentMetrics.TIMER)
+                .tags("interface", "Bank", "method", "payAll", "outcome", "error", "exception", "IllegalStateException").timer().count());
+    }
+
+    @Test
+    void asynchronousCallsAreTimedWhenCompleted() {
+        proxy(true).payAsync(new Customer("john", "1234567890"), Money.ofCents(100));
+        assertEquals(0, meterRegistry.find(ComponentMetrics.TIMER).tag("method", "payAsync").timers().size());
+        payment.completeExceptionally(new IllegalArgumentException("bank down"));
+        assertEquals(1, meterRegistry.get(ComponentMetrics.TIMER)
+                .tags("interface", "Bank", "method", "payAsync", "outcome", "error", "exception", "IllegalArgumentException").timer().count());
+    }
+
+    class TestBank implements Bank {
+
+        @Override
+        public Optional<String> pay(Customer customer, Money value) {
+            return Optional.of("RECEIPT");
+        }
+
+        @Override
+        public CompletableFuture<Optional<String>> payAsync(Customer customer, Money value) {
+            return payment;
+        }
+
+        @Override
+        public List<CompletableFuture<Optional<String>>> payAll(List<PaymentRequestDTO> payments) {
+            throw new IllegalStateException("no batch");
+        }
+
+    }
+
+}
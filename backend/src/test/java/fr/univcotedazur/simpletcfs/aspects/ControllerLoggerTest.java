@@ -0,0 +1,87 @@
+package fr.univcotedazur.simpletcfs.aspects;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univcotedazur.simpletcfs.controllers.CartController;
+import fr.univcotedazur.simpletcfs.controllers.OrderController;
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.exceptions.OrderIdNotFoundException;
+import fr.univcotedazur.simpletcfs.interfaces.CartModifier;
+import fr.univcotedazur.simpletcfs.interfaces.CartProcessor;
+import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ControllerLoggerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final OrderFinder orderFinder = mock(OrderFinder.class);
+
+    private OrderController controller;
+
+    @BeforeEach
+    void proxyTheController() {
+        controller = traced(new OrderController(orderFinder, mock(OrderStatusTracker.class), new ObjectMapper(), 1000));
+    }
+
+    private <T> T traced(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new ControllerLogger(meterRegistry, 1.0, 20));
+        return factory.getProxy();
+    }
+
+    @Test
+    void callsAreTimedByEndpointAndException() throws Exception {
+        when(orderFinder.retrieveOrderStatus(1L)).thenReturn(OrderStatus.READY);
+        when(orderFinder.retrieveOrderStatus(2L)).thenThrow(new OrderIdNotFoundException(2L));
+
+        assertEquals("READY", controller.getAnOrderStatus(1L));
+        assertEquals("READY", controller.getAnOrderStatus(1L));
+        assertThrows(OrderIdNotFoundException.class, () -> controller.getAnOrderStatus(2L));
+
+        assertEquals(2, meterRegistry.get(ControllerLogger.TIMER)
+                .tags("controller", "OrderController", "method", "getAnOrderStatus", "exception", "none").timer().count());
+        assertEquals(1, meterRegistry.get(ControllerLogger.TIMER)
+                .tags("controller", "OrderController", "method", "getAnOrderStatus", "exception", "OrderIdNotFoundException").timer().count());
+    }
+
+    @Test
+    void asynchronousCallsAreTimedWhenCompleted() throws Exception {
+        CartProcessor processor = mock(CartProcessor.class);
+        CompletableFuture<Order> validation = new CompletableFuture<>();
+        when(processor.validateAsync(7L)).thenReturn(validation);
+        CartController cartController = traced(new CartController(mock(CartModifier.class), processor,
+                mock(CatalogExplorator.class), Duration.ofMinutes(1), 10, 1000));
+
+        cartController.validate(7L, null);
+        assertEquals(0, meterRegistry.find(ControllerLogger.TIMER).tag("method", "validate").timers().size());
+        Customer customer = mock(Customer.class);
+        Order order = mock(Order.class);
+        when(order.getCustomer()).thenReturn(customer);
+        validation.complete(order);
+        assertEquals(1, meterRegistry.get(ControllerLogger.TIMER)
+                .tags("controller", "CartController", "method", "validate", "exception", "none").timer().count());
+    }
+
+    @Test
+    void payloadsAreTruncated() {
+        assertEquals("[1, 2]", ControllerLogger.truncate("[1, 2]", 10));
+        assertEquals("[1, 2... (12 characters)", ControllerLogger.truncate("[1, 2, 3, 4]", 5));
+    }
+
+}
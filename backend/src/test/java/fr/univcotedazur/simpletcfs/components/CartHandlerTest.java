@@ -1,29 +1,64 @@
 package fr.univcotedazur.simpletcfs.components;
 
+import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentRequestDTO;
 import fr.univcotedazur.simpletcfs.entities.Cookies;
 import fr.univcotedazur.simpletcfs.entities.Customer;
 import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
 import fr.univcotedazur.simpletcfs.exceptions.AlreadyExistingCustomerException;
 import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
 import fr.univcotedazur.simpletcfs.exceptions.EmptyCartException;
 import fr.univcotedazur.simpletcfs.exceptions.NegativeQuantityException;
+import fr.univcotedazur.simpletcfs.exceptions.PaymentException;
+import fr.univcotedazur.simpletcfs.interfaces.Bank;
 import fr.univcotedazur.simpletcfs.interfaces.CartModifier;
 import fr.univcotedazur.simpletcfs.interfaces.CartProcessor;
 import fr.univcotedazur.simpletcfs.interfaces.CustomerRegistration;
+import fr.univcotedazur.simpletcfs.interfaces.Payment;
 import fr.univcotedazur.simpletcfs.repositories.CustomerRepository;
+import fr.univcotedazur.simpletcfs.repositories.OrderRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
-@SpringBootTest // you can make test non transactional to be sure that transactions are properly handled in
+@SpringBootTest(properties = {"spring.jpa.properties.hibernate.session_factory.statement_inspector=fr.univcotedazur.simpletcfs.components.CartHandlerTest$StatementRecorder",
+        "cart.validation.reservation-timeout=0s"}) // every reservation without bank answer is stale for recoverStaleReservations
+// you can make test non transactional to be sure that transactions are properly handled in
         // controller methods (if you are actually testing controller methods!)
 // @Transactional
 // @Commit // default @Transactional is ROLLBACK (no need for the @AfterEach
@@ -35,12 +70,24 @@ class CartHandlerTest {
     @Autowired
     private CartProcessor cartProcessor;
 
+    @Autowired
+    private CartHandler cartHandler;
+
     @Autowired
     private CustomerRegistration customerRegistration;
 
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @MockitoBean
+    private Bank bankMock;
+
+    @MockitoSpyBean
+    private Payment payment;
+
     private Long johnId;
 
     @BeforeEach
@@ -50,8 +97,10 @@ class CartHandlerTest {
 
     @AfterEach
     void cleaningUp()  {
-        Optional<Customer> toDispose = customerRepository.findCustomerByName("John");
-        toDispose.ifPresent(customer -> customerRepository.delete(customer));
+        for (String name : List.of("John", "Jane", "Jack")) {
+            Optional<Customer> toDispose = customerRepository.findCustomerByName(name);
+            toDispose.ifPresent(customer -> customerRepository.delete(customer));
+        }
         johnId = null;
     }
 
@@ -62,49 +111,49 @@ class CartHandlerTest {
 
     @Test
     void addItems() throws NegativeQuantityException, CustomerIdNotFoundException {
-        Item itemResult = cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, 2));
-        assertEquals(new Item(Cookies.CHOCOLALALA, 2), itemResult);
-        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION, 3));
-        Set<Item> oracle = Set.of(new Item(Cookies.CHOCOLALALA, 2), new Item(Cookies.DARK_TEMPTATION, 3));
+        Item itemResult = cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        assertEquals(new Item(Cookies.CHOCOLALALA.getId(), 2), itemResult);
+        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION.getId(), 3));
+        Set<Item> oracle = Set.of(new Item(Cookies.CHOCOLALALA.getId(), 2), new Item(Cookies.DARK_TEMPTATION.getId(), 3));
         assertEquals(oracle, cartModifier.cartContent(johnId));
     }
 
     @Test
     void removeItems() throws NegativeQuantityException, CustomerIdNotFoundException {
-        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, 2));
-        Item itemResult = cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, -2));
-        assertEquals(new Item(Cookies.CHOCOLALALA, 0), itemResult);
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        Item itemResult = cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), -2));
+        assertEquals(new Item(Cookies.CHOCOLALALA.getId(), 0), itemResult);
         assertEquals(0, cartModifier.cartContent(johnId).size());
-        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, 6));
-        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, -5));
-        Set<Item> oracle = Set.of(new Item(Cookies.CHOCOLALALA, 1));
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 6));
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), -5));
+        Set<Item> oracle = Set.of(new Item(Cookies.CHOCOLALALA.getId(), 1));
         assertEquals(oracle, cartModifier.cartContent(johnId));
     }
 
     @Test
     void removeTooMuchItems() throws NegativeQuantityException, CustomerIdNotFoundException {
-        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, 2));
-        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION, 3));
-        Assertions.assertThrows(NegativeQuantityException.class, () -> cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, -3)));
-        Set<Item> oracle = Set.of(new Item(Cookies.CHOCOLALALA, 2), new Item(Cookies.DARK_TEMPTATION, 3));
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION.getId(), 3));
+        Assertions.assertThrows(NegativeQuantityException.class, () -> cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), -3)));
+        Set<Item> oracle = Set.of(new Item(Cookies.CHOCOLALALA.getId(), 2), new Item(Cookies.DARK_TEMPTATION.getId(), 3));
         assertEquals(oracle, cartModifier.cartContent(johnId));
     }
 
     @Test
     void modifyQuantities() throws NegativeQuantityException, CustomerIdNotFoundException {
-        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, 2));
-        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION, 3));
-        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, 3));
-        Set<Item> oracle = Set.of(new Item(Cookies.CHOCOLALALA, 5), new Item(Cookies.DARK_TEMPTATION, 3));
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION.getId(), 3));
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 3));
+        Set<Item> oracle = Set.of(new Item(Cookies.CHOCOLALALA.getId(), 5), new Item(Cookies.DARK_TEMPTATION.getId(), 3));
         assertEquals(oracle, cartModifier.cartContent(johnId));
     }
 
     @Test
     void getTheRightPrice() throws NegativeQuantityException, CustomerIdNotFoundException {
-        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, 2));
-        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION, 3));
-        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA, 3));
-        assertEquals(12.20, cartProcessor.cartPrice(johnId), 0.01);
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION.getId(), 3));
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 3));
+        assertEquals(Money.ofCents(1220), cartProcessor.cartPrice(johnId));
     }
 
     @Test
@@ -113,5 +162,177 @@ class CartHandlerTest {
         Assertions.assertThrows(EmptyCartException.class, () -> cartProcessor.validate(johnId));
     }
 
+    @Test
+    void validateOutOfTransactionWhilePaying() throws Exception {
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        CompletableFuture<Optional<String>> bankAnswer = new CompletableFuture<>();
+        when(bankMock.payAsync(any(Customer.class), any(Money.class))).thenAnswer(invocation -> {
+            assertFalse(TransactionSynchronizationManager.isActualTransactionActive()); // no transaction held during the bank call
+            return bankAnswer;
+        });
+        CompletableFuture<Order> validation = cartProcessor.validateAsync(johnId);
+        // the order is reserved and the cart emptied before the bank answers
+        assertEquals(0, cartModifier.cartContent(johnId).size());
+        assertEquals(OrderStatus.PAYMENT_PENDING, orderRepository.findAll().get(0).getStatus());
+        Assertions.assertThrows(EmptyCartException.class, () -> cartProcessor.validate(johnId));
+        bankAnswer.complete(Optional.of("payReceiptIdOK"));
+        Order order = validation.join();
+        assertEquals(OrderStatus.IN_PROGRESS, order.getStatus());
+        assertEquals("payReceiptIdOK", order.getPayReceiptId());
+        assertEquals(Money.ofCents(260), order.getPrice());
+    }
+
+    @Test
+    void validateRejectedPaymentRestoresTheCart() throws Exception {
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        when(bankMock.payAsync(any(Customer.class), any(Money.class))).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        Assertions.assertThrows(PaymentException.class, () -> cartProcessor.validate(johnId));
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 2)), cartModifier.cartContent(johnId));
+        assertEquals(0, orderRepository.count());
+    }
+
+    @Test
+    void bankFailureLeavesTheReservationToTheRecovery() throws Exception {
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        when(bankMock.payAsync(any(Customer.class), any(Money.class)))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("no answer from the bank")));
+        Assertions.assertThrows(CompletionException.class, () -> cartProcessor.validate(johnId));
+        // the payment may have gone through: neither cancelled nor restored at once
+        assertEquals(OrderStatus.PAYMENT_PENDING, orderRepository.findAll().get(0).getStatus());
+        assertEquals(0, cartModifier.cartContent(johnId).size());
+        cartHandler.recoverStaleReservations(); // reservation-timeout is 0s here
+        assertEquals(0, orderRepository.count());
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 2)), cartModifier.cartContent(johnId));
+    }
+
+    // the spy is behind the transactional proxy, it is stubbed directly (the proxy would require a transaction)
+    private Payment paymentSpy() {
+        return AopTestUtils.getUltimateTargetObject(payment);
+    }
+
+    @Test
+    void failedConfirmationIsRecoveredWithItsReceipt() throws Exception {
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        when(bankMock.payAsync(any(Customer.class), any(Money.class))).thenReturn(CompletableFuture.completedFuture(Optional.of("payReceiptIdOK")));
+        doThrow(new IllegalStateException("confirmation failed")).when(paymentSpy()).confirmReservedOrder(anyLong(), anyString());
+        Assertions.assertThrows(IllegalStateException.class, () -> cartProcessor.validate(johnId));
+        // paid but not confirmed: the receipt is kept on the reserved order
+        Order reserved = orderRepository.findAll().get(0);
+        assertEquals(OrderStatus.PAYMENT_PENDING, reserved.getStatus());
+        assertEquals("payReceiptIdOK", reserved.getPayReceiptId());
+        doCallRealMethod().when(paymentSpy()).confirmReservedOrder(anyLong(), anyString());
+        cartHandler.recoverStaleReservations();
+        Order confirmed = orderRepository.findById(reserved.getId()).orElseThrow();
+        assertEquals(OrderStatus.IN_PROGRESS, confirmed.getStatus());
+        assertEquals("payReceiptIdOK", confirmed.getPayReceiptId());
+        assertEquals(0, cartModifier.cartContent(johnId).size());
+    }
+
+    @Test
+    void reservationWithoutBankAnswerIsCancelledByTheRecovery() throws Exception {
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        CompletableFuture<Optional<String>> bankAnswer = new CompletableFuture<>();
+        when(bankMock.payAsync(any(Customer.class), any(Money.class))).thenReturn(bankAnswer);
+        CompletableFuture<Order> validation = cartProcessor.validateAsync(johnId);
+        cartHandler.recoverStaleReservations();
+        assertEquals(0, orderRepository.count());
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 2)), cartModifier.cartContent(johnId));
+        // a late answer no longer finds its reservation
+        bankAnswer.complete(Optional.of("payReceiptIdLate"));
+        Assertions.assertThrows(CompletionException.class, validation::join);
+        assertEquals(0, orderRepository.count());
+    }
+
+    @Test
+    void failedCancellationKeepsThePaymentError() throws Exception {
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        when(bankMock.payAsync(any(Customer.class), any(Money.class))).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        IllegalStateException cancellationFailure = new IllegalStateException("cancellation failed");
+        doThrow(cancellationFailure).when(paymentSpy()).cancelReservedOrder(anyLong());
+        PaymentException paymentError = Assertions.assertThrows(PaymentException.class, () -> cartProcessor.validate(johnId));
+        assertEquals(List.of(cancellationFailure), List.of(paymentError.getSuppressed()));
+        assertEquals(OrderStatus.PAYMENT_PENDING, orderRepository.findAll().get(0).getStatus());
+        doCallRealMethod().when(paymentSpy()).cancelReservedOrder(anyLong());
+        cartHandler.recoverStaleReservations();
+        assertEquals(0, orderRepository.count());
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 2)), cartModifier.cartContent(johnId));
+    }
+
+    @Test
+    void validateAllCarts() throws Exception {
+        Long janeId = customerRegistration.register("Jane", "0987654321").getId();
+        Long jackId = customerRegistration.register("Jack", "1111111111").getId(); // empty cart
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        cartModifier.update(janeId, new Item(Cookies.DARK_TEMPTATION.getId(), 1));
+        when(bankMock.payAll(anyList())).thenAnswer(invocation -> invocation.<List<PaymentRequestDTO>>getArgument(0).stream()
+                .map(request -> CompletableFuture.completedFuture(request.creditCard().equals("0987654321") ? Optional.<String>empty() : Optional.of("payReceiptIdOK")))
+                .toList());
+        Map<Long, CompletableFuture<Order>> results = cartProcessor.validateAll(List.of(johnId, janeId, jackId, -1L, johnId));
+        assertEquals(List.of(johnId, janeId, jackId, -1L), List.copyOf(results.keySet()));
+        Order order = results.get(johnId).join();
+        assertEquals(OrderStatus.IN_PROGRESS, order.getStatus());
+        assertEquals("payReceiptIdOK", order.getPayReceiptId());
+        assertEquals(Money.ofCents(260), order.getPrice());
+        assertInstanceOf(PaymentException.class, Assertions.assertThrows(CompletionException.class, () -> results.get(janeId).join()).getCause());
+        assertInstanceOf(EmptyCartException.class, Assertions.assertThrows(CompletionException.class, () -> results.get(jackId).join()).getCause());
+        assertInstanceOf(CustomerIdNotFoundException.class, Assertions.assertThrows(CompletionException.class, () -> results.get(-1L).join()).getCause());
+        assertEquals(0, cartModifier.cartContent(johnId).size());
+        assertEquals(Set.of(new Item(Cookies.DARK_TEMPTATION.getId(), 1)), cartModifier.cartContent(janeId)); // rejected, cart restored
+        assertEquals(1, orderRepository.count());
+        verify(bankMock, times(1)).payAll(anyList()); // both payments sent together
+        verify(bankMock, never()).payAsync(any(Customer.class), any(Money.class));
+    }
+
+    @Test
+    void batchWithoutBankAnswerIsLeftToTheRecovery() throws Exception {
+        Long janeId = customerRegistration.register("Jane", "0987654321").getId();
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        cartModifier.update(janeId, new Item(Cookies.DARK_TEMPTATION.getId(), 1));
+        when(bankMock.payAll(anyList())).thenAnswer(invocation -> invocation.<List<PaymentRequestDTO>>getArgument(0).stream()
+                .map(request -> request.creditCard().equals("0987654321")
+                        ? CompletableFuture.<Optional<String>>failedFuture(new TimeoutException("no answer from the bank"))
+                        : CompletableFuture.completedFuture(Optional.<String>empty()))
+                .toList());
+        Map<Long, CompletableFuture<Order>> results = cartProcessor.validateAll(List.of(johnId, janeId));
+        assertInstanceOf(PaymentException.class, Assertions.assertThrows(CompletionException.class, () -> results.get(johnId).join()).getCause());
+        assertInstanceOf(TimeoutException.class, Assertions.assertThrows(CompletionException.class, () -> results.get(janeId).join()).getCause());
+        // only the rejected payment is cancelled, the unanswered one may have gone through
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 2)), cartModifier.cartContent(johnId));
+        assertEquals(0, cartModifier.cartContent(janeId).size());
+        assertEquals(OrderStatus.PAYMENT_PENDING, orderRepository.findAll().get(0).getStatus());
+        cartHandler.recoverStaleReservations(); // reservation-timeout is 0s here
+        assertEquals(0, orderRepository.count());
+        assertEquals(Set.of(new Item(Cookies.DARK_TEMPTATION.getId(), 1)), cartModifier.cartContent(janeId));
+    }
+
+    @Test
+    void validationRoundTrips() throws Exception {
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION.getId(), 3));
+        when(bankMock.payAsync(any(Customer.class), any(Money.class))).thenReturn(CompletableFuture.completedFuture(Optional.of("payReceiptIdOK")));
+        StatementRecorder.STATEMENTS.clear();
+        cartProcessor.validate(johnId);
+        List<String> statements = List.copyOf(StatementRecorder.STATEMENTS);
+        // the ids are allocated by blocks: at most one call per sequence (orders, outbox events)
+        assertTrue(statements.stream().filter(sql -> sql.contains("next value for")).count() <= 2);
+        List<String> others = statements.stream().filter(sql -> !sql.contains("next value for")).toList();
+        // reservation: customer and cart read, order inserted, its items inserted as one batch, cart deleted (the past
+        // orders of the customer are not loaded); confirmation: order and items read, outbox event inserted, order updated
+        assertEquals(8, others.size(), String.join("\n", others));
+        assertEquals(1, others.stream().filter(sql -> sql.startsWith("insert into order_items")).count());
+        assertEquals(0, others.stream().filter(sql -> sql.contains("from orders") && sql.contains("where o1_0.customer_id=?")).count());
+    }
+
+    // every statement prepared by Hibernate, a JDBC batch being prepared once
+    public static class StatementRecorder implements StatementInspector {
+
+        static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
 
 }
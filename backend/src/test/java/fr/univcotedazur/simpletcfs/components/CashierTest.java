@@ -1,6 +1,7 @@
 package fr.univcotedazur.simpletcfs.components;
 
 import fr.univcotedazur.simpletcfs.entities.*;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.exceptions.PaymentException;
 import fr.univcotedazur.simpletcfs.interfaces.Bank;
 import fr.univcotedazur.simpletcfs.interfaces.Payment;
@@ -22,7 +23,7 @@ import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
@@ -53,8 +54,8 @@ class CashierTest {
     @BeforeEach
     void setUpContext() {
         items = new HashSet<>();
-        items.add(new Item(Cookies.CHOCOLALALA, 3));
-        items.add(new Item(Cookies.DARK_TEMPTATION, 2));
+        items.add(new Item(Cookies.CHOCOLALALA.getId(), 3));
+        items.add(new Item(Cookies.DARK_TEMPTATION.getId(), 2));
         // Customers
         john = new Customer("john", "1234896983");  // ends with the secret YES Card number
         john.setCart(items);
@@ -63,8 +64,8 @@ class CashierTest {
         pat.setCart(items);
         customerRepository.save(pat);
         // Mocking the bank proxy
-        when(bankMock.pay(eq(john),  anyDouble())).thenReturn(Optional.of("playReceiptOKId"));
-        when(bankMock.pay(eq(pat),  anyDouble())).thenReturn(Optional.empty());
+        when(bankMock.pay(eq(john),  any(Money.class))).thenReturn(Optional.of("playReceiptOKId"));
+        when(bankMock.pay(eq(pat),  any(Money.class))).thenReturn(Optional.empty());
     }
 
     @AfterEach
@@ -75,13 +76,13 @@ class CashierTest {
 
     @Test
     void processToPayment() throws Exception {
-        double price = (3 * Cookies.CHOCOLALALA.getPrice()) + (2 * Cookies.DARK_TEMPTATION.getPrice());
+        Money price = Cookies.CHOCOLALALA.getPrice().times(3).plus(Cookies.DARK_TEMPTATION.getPrice().times(2));
         // paying order
         Order order = cashier.payOrderFromCart(john, price);
         assertNotNull(order);
         assertEquals(john, order.getCustomer());
         assertEquals(items, order.getItems());
-        assertEquals(price, order.getPrice(), 0.0);
+        assertEquals(price, order.getPrice());
         assertEquals(2,order.getItems().size());
         assertEquals(OrderStatus.IN_PROGRESS, order.getStatus());
         Set<Order> johnOrders = john.getOrders();
@@ -91,7 +92,7 @@ class CashierTest {
 
     @Test
     void identifyPaymentError() {
-        Assertions.assertThrows( PaymentException.class, () -> cashier.payOrderFromCart(pat, 44.2));
+        Assertions.assertThrows( PaymentException.class, () -> cashier.payOrderFromCart(pat, Money.ofCents(4420)));
     }
 
 }
@@ -1,14 +1,27 @@
 package fr.univcotedazur.simpletcfs.components;
 
+import fr.univcotedazur.simpletcfs.dto.RecipeDTO;
 import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.Recipe;
+import fr.univcotedazur.simpletcfs.exceptions.UnknownRecipeException;
 import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
+import fr.univcotedazur.simpletcfs.interfaces.CatalogModifier;
+import fr.univcotedazur.simpletcfs.repositories.RecipeRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 class CatalogTest {
@@ -16,10 +29,72 @@ class CatalogTest {
     @Autowired
     private CatalogExplorator catalog;
 
+    @Autowired
+    private CatalogModifier catalogModifier;
+
+    @Autowired
+    private RecipeRepository recipeRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Test
     void listPreMadeRecipesTest() {
-        Set<Cookies> premade = catalog.listPreMadeRecipes();
+        Set<String> premade = catalog.listPreMadeRecipes();
         assertEquals(3, premade.size());
+        assertEquals(3, recipeRepository.count()); // initial recipes created at the first start
+    }
+
+    @Test
+    void indexLookupsTest() {
+        RecipeDTO chocolalala = catalog.findById(Cookies.CHOCOLALALA.getId()).orElseThrow();
+        assertEquals("CHOCOLALALA", chocolalala.name());
+        assertSame(chocolalala, catalog.findByName("CHOCOLALALA").orElseThrow());
+        assertSame(catalog.findById(Cookies.CHOCOLALALA.getId()), catalog.findById(Cookies.CHOCOLALALA.getId())); // nothing allocated
+        assertFalse(catalog.findById((short) 42).isPresent());
+        assertFalse(catalog.findByName("UNKNOWN").isPresent());
+        assertEquals(List.of("SOO_CHOCOLATE"), catalog.findByNamePrefix("SOO").stream().map(RecipeDTO::name).toList());
+        assertEquals(3, catalog.findByNamePrefix("").size());
+        assertEquals(0, catalog.findByNamePrefix("Z").size());
+        assertEquals(List.of("SOO_CHOCOLATE", "CHOCOLALALA"),
+                catalog.findByPriceRange(Cookies.SOO_CHOCOLATE.getPrice(), Cookies.CHOCOLALALA.getPrice()).stream().map(RecipeDTO::name).toList());
+        assertEquals(0, catalog.findByPriceRange(Money.ofCents(200), Money.ofCents(100)).size());
+    }
+
+    @Test
+    void priceUpdateTest() throws Exception {
+        Set<String> names = catalog.listPreMadeRecipes();
+        try {
+            Money price = Money.ofCents(250);
+            assertEquals(price, catalogModifier.updatePrice("DARK_TEMPTATION", price).price());
+            assertEquals(price, catalog.findByName("DARK_TEMPTATION").orElseThrow().price());
+            assertEquals(price, recipeRepository.findRecipeByName("DARK_TEMPTATION").orElseThrow().getPrice());
+            assertEquals(List.of("DARK_TEMPTATION"), catalog.findByPriceRange(Money.ofCents(200), Money.ofCents(300)).stream().map(RecipeDTO::name).toList());
+            assertSame(names, catalog.listPreMadeRecipes()); // same names, the snapshots and searches are kept
+        } finally {
+            catalogModifier.updatePrice("DARK_TEMPTATION", Cookies.DARK_TEMPTATION.getPrice());
+        }
+        assertThrows(UnknownRecipeException.class, () -> catalogModifier.updatePrice("UNKNOWN", Money.ofCents(100)));
+        assertThrows(IllegalArgumentException.class, () -> catalogModifier.updatePrice("DARK_TEMPTATION", Money.ZERO));
+    }
+
+    @Test
+    void recipesWrittenInTheDbAreReloaded() {
+        Set<String> names = catalog.listPreMadeRecipes();
+        try {
+            recipeRepository.save(new Recipe((short) 42, "MACADAMIA_DREAM", "Macadamia dream", Money.ofCents(180)));
+            assertFalse(catalog.findByName("MACADAMIA_DREAM").isPresent()); // not seen until reloaded
+            catalogModifier.reload();
+            assertEquals(Money.ofCents(180), catalog.findById((short) 42).orElseThrow().price());
+            assertEquals(Set.of("MACADAMIA_DREAM"), catalog.exploreCatalogue("MACADAMIA.*"));
+            assertTrue(catalog.listPreMadeRecipes().contains("MACADAMIA_DREAM"));
+        } finally {
+            recipeRepository.deleteById((short) 42);
+            catalogModifier.reload();
+        }
+        assertEquals(names, catalog.listPreMadeRecipes());
+        assertFalse(catalog.findByName("MACADAMIA_DREAM").isPresent());
+        assertEquals(0, catalog.exploreCatalogue("MACADAMIA.*").size()); // the searches of the former names are dropped
     }
 
     @Test
@@ -29,4 +104,35 @@ class CatalogTest {
         assertEquals(1, catalog.exploreCatalogue(Cookies.DARK_TEMPTATION.name()).size());
     }
 
-}
\ No newline at end of file
+    @Test
+    void repeatedSearchesAreCached() {
+        Set<String> chocolate = catalog.exploreCatalogue(".*CHOCO.*");
+        assertSame(chocolate, catalog.exploreCatalogue(".*CHOCO.*"));
+        assertThrows(UnsupportedOperationException.class, () -> chocolate.add(Cookies.DARK_TEMPTATION.name()));
+    }
+
+    @Test
+    void hostilePatternsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> catalog.exploreCatalogue("[unclosed"));
+        assertThrows(IllegalArgumentException.class, () -> catalog.exploreCatalogue("A".repeat(Catalog.MAX_PATTERN_LENGTH + 1)));
+        String catastrophic = "((((\\w+)+)+)+)+\\d"; // tens of seconds of backtracking on DARK_TEMPTATION
+        long start = System.nanoTime();
+        assertThrows(IllegalArgumentException.class, () -> catalog.exploreCatalogue(catastrophic));
+        assertThrows(IllegalArgumentException.class, () -> catalog.exploreCatalogue(catastrophic)); // not evaluated again
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+    }
+
+    @Test
+    void rejectedPatternsAreEvaluatedAgainOnceExpired() {
+        Catalog noRejectionKept = new Catalog(recipeRepository, transactionTemplate, Duration.ZERO);
+        String catastrophic = "((((\\w+)+)+)+)+\\d";
+        long start = System.nanoTime();
+        assertThrows(IllegalArgumentException.class, () -> noRejectionKept.exploreCatalogue(catastrophic));
+        assertThrows(IllegalArgumentException.class, () -> noRejectionKept.exploreCatalogue(catastrophic));
+        // evaluated twice, each evaluation running until the match timeout
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Catalog.MATCH_TIMEOUT.multipliedBy(2)) >= 0);
+        Set<String> chocolate = noRejectionKept.exploreCatalogue(".*CHOCO.*");
+        assertSame(chocolate, noRejectionKept.exploreCatalogue(".*CHOCO.*")); // the completed searches are still cached
+    }
+
+}
@@ -0,0 +1,94 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.interfaces.CartModifier;
+import fr.univcotedazur.simpletcfs.interfaces.CustomerFinder;
+import fr.univcotedazur.simpletcfs.interfaces.CustomerRegistration;
+import fr.univcotedazur.simpletcfs.repositories.CustomerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+// not transactional: entries are only put in the second-level cache when the transactions commit
+class CustomerCacheTest {
+
+    @Autowired
+    private CustomerRegistration customerRegistration;
+
+    @Autowired
+    private CustomerFinder customerFinder;
+
+    @Autowired
+    private CartModifier cartModifier;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    private Long johnId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        johnId = customerRegistration.register("John", "1234567890").getId();
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 2));
+        cartModifier.cartContent(johnId); // cart reloaded (its cache entry being evicted by the update), then cached
+    }
+
+    @AfterEach
+    void cleaningUp() {
+        customerRepository.findCustomerByName("John").ifPresent(customer -> customerRepository.delete(customer));
+    }
+
+    @Test
+    void cartReadFromTheCache() throws Exception {
+        statistics.clear();
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 2)), cartModifier.cartContent(johnId));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getSecondLevelCacheHitCount()); // the customer, then its cart
+    }
+
+    @Test
+    void cartUpdateInvalidatesTheCache() throws Exception {
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), 3));
+        cartModifier.update(johnId, new Item(Cookies.DARK_TEMPTATION.getId(), 1));
+        assertEquals(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 5), new Item(Cookies.DARK_TEMPTATION.getId(), 1)), cartModifier.cartContent(johnId));
+        cartModifier.update(johnId, new Item(Cookies.CHOCOLALALA.getId(), -5));
+        assertEquals(Set.of(new Item(Cookies.DARK_TEMPTATION.getId(), 1)), cartModifier.cartContent(johnId));
+    }
+
+    @Test
+    void customerFoundByNameFromTheCache() {
+        assertEquals(johnId, customerFinder.findByName("John").orElseThrow().getId()); // both caches filled
+        statistics.clear();
+        assertEquals(johnId, customerFinder.findByName("John").orElseThrow().getId());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getNaturalIdCacheHitCount());
+        assertNotNull(meterRegistry.find("hibernate.second.level.cache.requests").tag("result", "hit").functionCounter());
+        assertTrue(meterRegistry.find("hibernate.cache.natural.id.requests").tag("result", "hit").functionCounter().count() > 0);
+    }
+
+}
@@ -0,0 +1,90 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import fr.univcotedazur.simpletcfs.dto.OrderCreatedEvent;
+import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.interfaces.CustomerRegistration;
+import fr.univcotedazur.simpletcfs.interfaces.OrderEventPublisher;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
+import fr.univcotedazur.simpletcfs.repositories.CustomerRepository;
+import fr.univcotedazur.simpletcfs.repositories.OrderRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "kitchen.bake-time=50ms")
+// not transactional: the outbox events of the orders are only relayed to the kitchen once committed
+class KitchenBakingTest {
+
+    @Autowired
+    private CustomerRegistration registry;
+
+    @Autowired
+    private Kitchen kitchen;
+
+    @Autowired
+    private OrderEventPublisher orderEventPublisher;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private OrderFinder orderFinder;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleaningUp() {
+        customerRepository.findCustomerByName("john").ifPresent(customer -> customerRepository.delete(customer));
+    }
+
+    @Test
+    void orderBakedThenReady() throws Exception {
+        Customer john = registry.register("john", "1234896983");
+        Long orderId = transactionTemplate.execute(status -> {
+            Customer customer = customerRepository.findById(john.getId()).orElseThrow();
+            Order order = orderRepository.save(new Order(customer, Set.of(new Item(Cookies.CHOCOLALALA.getId(), 3),
+                    new Item(Cookies.DARK_TEMPTATION.getId(), 2)), Cookies.CHOCOLALALA.getPrice().times(5), "payReceiptIdOK"));
+            customer.addOrder(order);
+            orderEventPublisher.orderCreated(order);
+            return kitchen.processInKitchen(order).getId();
+        });
+        assertEquals(OrderStatus.IN_PROGRESS, orderFinder.retrieveOrderStatus(orderId));
+        outbox.relay();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (orderFinder.retrieveOrderStatus(orderId) != OrderStatus.READY && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(OrderStatus.READY, orderFinder.retrieveOrderStatus(orderId));
+        assertTrue(meterRegistry.get("kitchen.orders.ready").counter().count() >= 1);
+        // the event delivered again (at least once) does not bake the ready order again
+        kitchen.ordersCreated(List.of(new OrderCreatedEvent(orderId, john.getId(), Map.of(Cookies.CHOCOLALALA.getId(), 3,
+                Cookies.DARK_TEMPTATION.getId(), 2), Cookies.CHOCOLALALA.getPrice().times(5))));
+        assertEquals(0, meterRegistry.get("kitchen.queue.depth").gauge().value());
+        assertEquals(OrderStatus.READY, orderFinder.retrieveOrderStatus(orderId));
+    }
+
+}
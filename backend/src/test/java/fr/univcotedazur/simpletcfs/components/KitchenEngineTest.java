@@ -0,0 +1,87 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import fr.univcotedazur.simpletcfs.configurations.KitchenProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KitchenEngineTest {
+
+    private static final short CHOCOLALALA = 1;
+    private static final short DARK_TEMPTATION = 2;
+
+    private final BlockingQueue<List<Long>> ready = new LinkedBlockingQueue<>();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private KitchenEngine engine;
+
+    // one oven of ovenCapacity cookies, express orders of at most 3 cookies, 20 ms per bake
+    private KitchenEngine engine(int ovenCapacity, int queueCapacity) {
+        engine = new KitchenEngine(new KitchenProperties(1, ovenCapacity, queueCapacity, 3, Duration.ofMillis(20), null, Duration.ofMillis(50)),
+                recipe -> Duration.ofMillis(20), ready::add, meterRegistry);
+        return engine;
+    }
+
+    @AfterEach
+    void stopOvens() {
+        engine.stop();
+    }
+
+    @Test
+    void identicalCookiesOfSeveralOrdersAreBakedTogether() throws Exception {
+        engine(24, 10);
+        assertTrue(engine.submit(1L, Map.of(CHOCOLALALA, 4)));
+        assertTrue(engine.submit(2L, Map.of(CHOCOLALALA, 5)));
+        assertEquals(9, engine.waitingCookies());
+        engine.start();
+        assertEquals(List.of(1L, 2L), ready.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("kitchen.bake.size").summary().count());
+        assertEquals(9, meterRegistry.get("kitchen.bake.size").summary().totalAmount());
+        assertEquals(0, engine.queueDepth());
+        assertEquals(2, engine.ordersPerMinute());
+    }
+
+    @Test
+    void orderReadyWhenAllItsRecipesAreBaked() throws Exception {
+        engine(4, 10);
+        assertTrue(engine.submit(1L, Map.of(CHOCOLALALA, 6, DARK_TEMPTATION, 2))); // 3 bakes
+        engine.start();
+        assertEquals(List.of(1L), ready.poll(5, TimeUnit.SECONDS));
+        assertEquals(3, meterRegistry.get("kitchen.bake.size").summary().count());
+        assertEquals(1, meterRegistry.get("kitchen.orders.ready").counter().count());
+    }
+
+    @Test
+    void expressOrdersAreBakedFirst() throws Exception {
+        engine(4, 10);
+        assertTrue(engine.submit(1L, Map.of(CHOCOLALALA, 8)));
+        assertTrue(engine.submit(2L, Map.of(DARK_TEMPTATION, 2))); // express
+        engine.start();
+        assertEquals(List.of(2L), ready.poll(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1L), ready.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submitTimesOutWhenTheQueueIsFull() throws Exception {
+        engine(24, 1);
+        assertTrue(engine.submit(1L, Map.of(CHOCOLALALA, 1)));
+        assertFalse(engine.submit(2L, Map.of(CHOCOLALALA, 1))); // no oven started
+        assertEquals(1, engine.queueDepth());
+        assertThrows(IllegalArgumentException.class, () -> engine.submit(3L, Map.of()));
+    }
+
+}
@@ -36,10 +36,10 @@ class KitchenTest {
     @BeforeEach
     void setUpContext() throws Exception {
         Set<Item> items = new HashSet<>();
-        items.add(new Item(Cookies.CHOCOLALALA, 3));
-        items.add(new Item(Cookies.DARK_TEMPTATION, 2));
+        items.add(new Item(Cookies.CHOCOLALALA.getId(), 3));
+        items.add(new Item(Cookies.DARK_TEMPTATION.getId(), 2));
         Customer john = registry.register("john", "1234-896983");
-        Order newOrder = new Order(john, items, (3 * Cookies.CHOCOLALALA.getPrice()) + (2 * Cookies.DARK_TEMPTATION.getPrice()), "payReceiptIdOK");
+        Order newOrder = new Order(john, items, Cookies.CHOCOLALALA.getPrice().times(3).plus(Cookies.DARK_TEMPTATION.getPrice().times(2)), "payReceiptIdOK");
         order = orderRepository.save(newOrder);
         john.addOrder(order);
     }
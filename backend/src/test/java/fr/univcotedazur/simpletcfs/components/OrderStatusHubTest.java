@@ -0,0 +1,101 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import fr.univcotedazur.simpletcfs.dto.OrderStatusEvent;
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusListener;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderStatusHubTest {
+
+    private final OrderStatusHub hub = new OrderStatusHub(List.of(Runnable::run), new SimpleMeterRegistry()); // delivered at once
+
+    @Test
+    void changesAreSentToTheFollowersOfTheOrderAndOfAllOrders() {
+        List<OrderStatusEvent> order1 = new ArrayList<>();
+        List<OrderStatusEvent> all = new ArrayList<>();
+        hub.subscribe(1L, order1::add);
+        hub.subscribeAll(all::add);
+        hub.statusChanged(order(1L, OrderStatus.IN_PROGRESS)); // no transaction: published at once
+        hub.statusChanged(order(2L, OrderStatus.READY));
+        assertEquals(List.of(new OrderStatusEvent(1L, 7L, OrderStatus.IN_PROGRESS)), order1);
+        assertEquals(List.of(new OrderStatusEvent(1L, 7L, OrderStatus.IN_PROGRESS), new OrderStatusEvent(2L, 7L, OrderStatus.READY)), all);
+        assertEquals(2, hub.subscriberCount());
+    }
+
+    @Test
+    void unsubscribedOrFailingListenersAreNotCalledAnymore() {
+        List<OrderStatusEvent> received = new ArrayList<>();
+        OrderStatusListener listener = received::add;
+        OrderStatusListener failing = event -> {
+            throw new IllegalStateException("client gone");
+        };
+        hub.subscribe(1L, listener);
+        hub.subscribe(1L, failing);
+        hub.statusChanged(order(1L, OrderStatus.IN_PROGRESS));
+        assertEquals(1, hub.subscriberCount()); // the failing one
+        hub.unsubscribe(1L, listener);
+        hub.statusChanged(order(1L, OrderStatus.READY));
+        assertEquals(1, received.size());
+        assertEquals(0, hub.subscriberCount());
+    }
+
+    @Test
+    void listenersAreDroppedWhenTheDeliveriesAreFull() {
+        OrderStatusHub full = new OrderStatusHub(List.of(task -> {
+            throw new RejectedExecutionException("queue full");
+        }), new SimpleMeterRegistry());
+        List<String> calls = new ArrayList<>();
+        OrderStatusListener listener = new OrderStatusListener() {
+            @Override
+            public void accept(OrderStatusEvent event) {
+                calls.add("accept");
+            }
+
+            @Override
+            public void dropped() {
+                calls.add("dropped");
+            }
+        };
+        full.subscribe(1L, listener);
+        full.subscribeAll(listener);
+        full.statusChanged(order(1L, OrderStatus.IN_PROGRESS));
+        assertEquals(List.of("dropped", "dropped"), calls);
+        assertEquals(0, full.subscriberCount());
+    }
+
+    @Test
+    void changesOfAnOrderGoThroughTheSameLane() {
+        List<Runnable> lane0 = new ArrayList<>();
+        List<Runnable> lane1 = new ArrayList<>();
+        OrderStatusHub lanes = new OrderStatusHub(List.of(lane0::add, lane1::add), new SimpleMeterRegistry());
+        lanes.subscribeAll(event -> {
+        });
+        lanes.statusChanged(order(1L, OrderStatus.IN_PROGRESS));
+        lanes.statusChanged(order(2L, OrderStatus.IN_PROGRESS));
+        lanes.statusChanged(order(1L, OrderStatus.READY));
+        assertEquals(2, lane1.size()); // order 1, in order on a single thread
+        assertEquals(1, lane0.size());
+    }
+
+    private static Order order(Long id, OrderStatus status) {
+        Customer customer = mock(Customer.class);
+        when(customer.getId()).thenReturn(7L);
+        Order order = mock(Order.class);
+        when(order.getId()).thenReturn(id);
+        when(order.getCustomer()).thenReturn(customer);
+        when(order.getStatus()).thenReturn(status);
+        return order;
+    }
+
+}
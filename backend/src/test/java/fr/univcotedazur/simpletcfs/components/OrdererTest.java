@@ -1,6 +1,8 @@
 package fr.univcotedazur.simpletcfs.components;
 
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
 import fr.univcotedazur.simpletcfs.entities.*;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.exceptions.OrderIdNotFoundException;
 import fr.univcotedazur.simpletcfs.interfaces.CustomerRegistration;
 import org.junit.jupiter.api.Assertions;
@@ -10,7 +12,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -31,11 +35,11 @@ class OrdererTest {
     @BeforeEach
     void setUpContext() throws Exception {
         Set<Item> items = new HashSet<>();
-        items.add(new Item(Cookies.CHOCOLALALA, 3));
-        items.add(new Item(Cookies.DARK_TEMPTATION, 2));
+        items.add(new Item(Cookies.CHOCOLALALA.getId(), 3));
+        items.add(new Item(Cookies.DARK_TEMPTATION.getId(), 2));
         Customer john = registry.register("john", "1234896983");
         john.setCart(items);
-        orderId = orderer.createOrder(john, (3 * Cookies.CHOCOLALALA.getPrice()) + (2 * Cookies.DARK_TEMPTATION.getPrice()), "payReceiptIdOK").getId();
+        orderId = orderer.createOrder(john, Cookies.CHOCOLALALA.getPrice().times(3).plus(Cookies.DARK_TEMPTATION.getPrice().times(2)), "payReceiptIdOK").getId();
     }
 
     @Test
@@ -52,13 +56,13 @@ class OrdererTest {
         assertEquals(orderId, order.getId());
         assertEquals(OrderStatus.VALIDATED, order.getStatus());
         assertEquals(2, order.getItems().size());
-        assertEquals(3, order.getItems().stream().filter(item -> item.getCookie().equals(Cookies.CHOCOLALALA)).findFirst().get().getQuantity());
-        assertEquals(2, order.getItems().stream().filter(item -> item.getCookie().equals(Cookies.DARK_TEMPTATION)).findFirst().get().getQuantity());
-        assertEquals(3 * Cookies.CHOCOLALALA.getPrice() + 2 * Cookies.DARK_TEMPTATION.getPrice(), order.getPrice());
+        assertEquals(3, order.getItems().stream().filter(item -> item.getRecipeId() == Cookies.CHOCOLALALA.getId()).findFirst().get().getQuantity());
+        assertEquals(2, order.getItems().stream().filter(item -> item.getRecipeId() == Cookies.DARK_TEMPTATION.getId()).findFirst().get().getQuantity());
+        assertEquals(Cookies.CHOCOLALALA.getPrice().times(3).plus(Cookies.DARK_TEMPTATION.getPrice().times(2)), order.getPrice());
         assertEquals("payReceiptIdOK", order.getPayReceiptId());
         assertEquals("john", john.getName());
         // John's cart is not empty, we can reuse it to create another order
-        orderer.createOrder(john, 12, "payReceiptIdOK");
+        orderer.createOrder(john, Money.ofCents(1200), "payReceiptIdOK");
         assertEquals(2, orderer.findAll().size());
     }
 
@@ -72,4 +76,17 @@ class OrdererTest {
         assertEquals(OrderStatus.READY, order.getStatus());
     }
 
+    @Test
+    void orderPaging() throws Exception {
+        Customer john = orderer.retrieveOrder(orderId).getCustomer();
+        Long second = orderer.createOrder(john, Money.ofCents(1200), "payReceiptIdOK").getId();
+        Long third = orderer.createOrder(john, Money.ofCents(1400), "payReceiptIdOK").getId();
+        assertEquals(List.of(orderId, second), orderer.findPage(0L, 2).stream().map(OrderDTO::id).toList());
+        assertEquals(List.of(third), orderer.findPage(second, 2).stream().map(OrderDTO::id).toList());
+        assertTrue(orderer.findPage(third, 2).isEmpty());
+        List<Long> streamed = new ArrayList<>();
+        orderer.forEachOrder(order -> streamed.add(order.id()));
+        assertEquals(List.of(orderId, second, third), streamed);
+    }
+
 }
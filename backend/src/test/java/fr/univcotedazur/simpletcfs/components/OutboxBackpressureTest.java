@@ -0,0 +1,125 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.entities.OutboxEvent;
+import fr.univcotedazur.simpletcfs.exceptions.OrderIdNotFoundException;
+import fr.univcotedazur.simpletcfs.interfaces.Bank;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
+import fr.univcotedazur.simpletcfs.interfaces.Payment;
+import fr.univcotedazur.simpletcfs.repositories.CustomerRepository;
+import fr.univcotedazur.simpletcfs.repositories.OrderRepository;
+import fr.univcotedazur.simpletcfs.repositories.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// A kitchen of a single order: the events of the orders that do not fit wait in the outbox, without being counted as
+// failed deliveries
+@SpringBootTest(properties = {"kitchen.queue-capacity=1", "kitchen.bake-time=50ms", "kitchen.submit-timeout=0s",
+        "outbox.relay.max-attempts=2"})
+class OutboxBackpressureTest {
+
+    @Autowired
+    private Payment cashier;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private OrderFinder orderFinder;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private Bank bankMock;
+
+    private Long johnId;
+
+    @BeforeEach
+    void setUp() {
+        Customer john = new Customer("john", "1234896983");
+        john.setCart(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 3)));
+        johnId = customerRepository.save(john).getId();
+        when(bankMock.pay(any(Customer.class), any(Money.class))).thenReturn(Optional.of("playReceiptOKId"));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        orderRepository.deleteAll();
+        customerRepository.deleteAll();
+        outboxEventRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM outbox_dead_event");
+    }
+
+    private Long pay() {
+        return transactionTemplate.execute(status -> {
+            Customer john = customerRepository.findById(johnId).orElseThrow();
+            try {
+                return cashier.payOrderFromCart(john, Cookies.CHOCOLALALA.getPrice().times(3)).getId();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void eventsWaitForRoomInTheKitchen() throws Exception {
+        List<Long> orderIds = List.of(pay(), pay(), pay());
+        outbox.relay();
+        List<OutboxEvent> waiting = outboxEventRepository.findAll();
+        assertTrue(waiting.size() >= 2); // the kitchen took one order at most
+        assertTrue(waiting.stream().allMatch(event -> event.getAttempts() == 0));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outboxEventRepository.count() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            outbox.relay(); // more relays than max-attempts
+        }
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_dead_event", Integer.class));
+        deadline = System.currentTimeMillis() + 5000;
+        while (!orderIds.stream().allMatch(this::isReady) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(orderIds.stream().allMatch(this::isReady));
+    }
+
+    private boolean isReady(Long orderId) {
+        try {
+            return orderFinder.retrieveOrderStatus(orderId) == OrderStatus.READY;
+        } catch (OrderIdNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
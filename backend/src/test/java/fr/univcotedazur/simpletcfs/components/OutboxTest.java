@@ -0,0 +1,202 @@
+package fr.univcotedazur.simpletcfs.components;
+
+import fr.univcotedazur.simpletcfs.dto.OrderCreatedEvent;
+import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OutboxEvent;
+import fr.univcotedazur.simpletcfs.interfaces.Bank;
+import fr.univcotedazur.simpletcfs.interfaces.OrderEventConsumer;
+import fr.univcotedazur.simpletcfs.interfaces.Payment;
+import fr.univcotedazur.simpletcfs.repositories.CustomerRepository;
+import fr.univcotedazur.simpletcfs.repositories.OrderRepository;
+import fr.univcotedazur.simpletcfs.repositories.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "outbox.relay.max-attempts=2")
+// not transactional: the events are committed with their order, then relayed
+class OutboxTest {
+
+    @Autowired
+    private Payment cashier;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RecordingConsumer consumer;
+
+    @MockitoBean
+    private Bank bankMock;
+
+    private Long johnId;
+
+    @BeforeEach
+    void setUp() {
+        outbox.relay(); // the events of the previous tests sharing the DB
+        outboxEventRepository.deleteAll();
+        consumer.received().clear();
+        consumer.setFailing(false);
+        consumer.setFailingOrderId(null);
+        Customer john = new Customer("john", "1234896983");
+        john.setCart(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 3)));
+        johnId = customerRepository.save(john).getId();
+        when(bankMock.pay(any(Customer.class), any(Money.class))).thenReturn(Optional.of("playReceiptOKId"));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        orderRepository.deleteAll();
+        customerRepository.deleteAll();
+        outboxEventRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM outbox_dead_event");
+    }
+
+    private Order pay() {
+        return transactionTemplate.execute(status -> {
+            Customer john = customerRepository.findById(johnId).orElseThrow();
+            try {
+                return cashier.payOrderFromCart(john, Cookies.CHOCOLALALA.getPrice().times(3));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void eventWrittenWithTheOrderThenRelayed() {
+        Order order = pay();
+        List<OutboxEvent> events = outboxEventRepository.findAll();
+        assertEquals(1, events.size());
+        assertEquals(Outbox.ORDER_CREATED, events.get(0).getType());
+        assertEquals(order.getId(), events.get(0).getAggregateId());
+        outbox.relay();
+        assertEquals(List.of(new OrderCreatedEvent(order.getId(), johnId, Map.of(Cookies.CHOCOLALALA.getId(), 3),
+                Cookies.CHOCOLALALA.getPrice().times(3))), consumer.received());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    void noEventWhenTheOrderIsRolledBack() {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            pay(); // joins the transaction
+            throw new IllegalStateException("commit failure");
+        }));
+        assertEquals(0, orderRepository.count());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    void failedDeliveriesAreRetriedThenGivenUp() {
+        pay();
+        consumer.setFailing(true);
+        outbox.relay();
+        assertEquals(1, outboxEventRepository.findAll().get(0).getAttempts());
+        consumer.setFailing(false);
+        outbox.relay();
+        assertEquals(1, consumer.received().size());
+        assertEquals(0, outboxEventRepository.count());
+        pay(); // the cart is empty, but the payment is only about the price
+        consumer.setFailing(true);
+        outbox.relay();
+        assertEquals(1, outboxEventRepository.findAll().get(0).getAttempts());
+        outbox.relay();
+        assertEquals(0, outboxEventRepository.count()); // given up, moved to the dead events
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_dead_event WHERE attempts = 2", Integer.class));
+        consumer.setFailing(false);
+        outbox.relay();
+        assertEquals(1, consumer.received().size());
+    }
+
+    @Test
+    void onlyTheFailingEventOfABatchCountsAnAttempt() {
+        Order failing = pay();
+        Order delivered = pay();
+        consumer.setFailingOrderId(failing.getId());
+        outbox.relay(); // the batch fails, then its events are delivered one by one
+        assertEquals(List.of(delivered.getId()), consumer.received().stream().map(OrderCreatedEvent::orderId).toList());
+        List<OutboxEvent> events = outboxEventRepository.findAll();
+        assertEquals(1, events.size());
+        assertEquals(failing.getId(), events.get(0).getAggregateId());
+        assertEquals(1, events.get(0).getAttempts());
+    }
+
+    static class RecordingConsumer implements OrderEventConsumer {
+
+        private final List<OrderCreatedEvent> received = new ArrayList<>();
+
+        private volatile boolean failing;
+
+        private volatile Long failingOrderId;
+
+        @Override
+        public Set<Long> ordersCreated(List<OrderCreatedEvent> events) {
+            if (failing)
+                throw new IllegalStateException("consumer down");
+            if (events.stream().anyMatch(event -> event.orderId().equals(failingOrderId)))
+                throw new IllegalStateException("order " + failingOrderId + " rejected");
+            received.addAll(events);
+            return Set.of();
+        }
+
+        // through methods, the bean being proxied (e.g. by the ComponentMetrics aspect)
+        List<OrderCreatedEvent> received() {
+            return received;
+        }
+
+        void setFailing(boolean failing) {
+            this.failing = failing;
+        }
+
+        void setFailingOrderId(Long failingOrderId) {
+            this.failingOrderId = failingOrderId;
+        }
+    }
+
+    @TestConfiguration
+    static class ConsumerConfig {
+
+        @Bean
+        RecordingConsumer recordingConsumer() { // another consumer, next to the kitchen
+            return new RecordingConsumer();
+        }
+    }
+
+}
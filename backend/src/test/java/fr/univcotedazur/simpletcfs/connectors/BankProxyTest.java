@@ -1,11 +1,23 @@
 package fr.univcotedazur.simpletcfs.connectors;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univcotedazur.simpletcfs.configurations.BankHttpProperties;
 import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentReceiptDTO;
+import fr.univcotedazur.simpletcfs.connectors.externaldto.PaymentRequestDTO;
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,7 +25,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,6 +40,8 @@ class BankProxyTest {
     private static MockWebServer mockWebServer;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private static final int DEFAULT_FALLBACK_CONCURRENCY = 8;
+
     private BankProxy bankProxy;
 
     @BeforeAll
@@ -43,9 +63,29 @@ class BankProxyTest {
         }
     }
 
+    private int requestCountBefore;
+
     @BeforeEach
     void init() {
-        bankProxy = new BankProxy(mockWebServer.url("/").toString());
+        bankProxy = bankProxy(DEFAULT_FALLBACK_CONCURRENCY, CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults());
+    }
+
+    // built as by Spring, from the registries of the circuit breaker and of the bulkhead
+    private static BankProxy bankProxy(int fallbackConcurrency, CircuitBreakerRegistry circuitBreakers, BulkheadRegistry bulkheads) {
+        return new BankProxy(mockWebServer.url("/").toString(), fallbackConcurrency, circuitBreakers, bulkheads, BankHttpProperties.defaults());
+    }
+
+    @AfterEach
+    void closeConnections() {
+        bankProxy.destroy();
+    }
+
+    // the server is shared by all tests, the requests recorded by the previous ones are discarded
+    private void drainRecordedRequests() throws InterruptedException {
+        while (mockWebServer.takeRequest(0, TimeUnit.SECONDS) != null) {
+            // discarded
+        }
+        requestCountBefore = mockWebServer.getRequestCount();
     }
 
     @Test
@@ -53,24 +93,269 @@ class BankProxyTest {
         // Given
         mockWebServer.enqueue(new MockResponse()
                 .setResponseCode(HttpStatus.CREATED.value())
-                .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("654321", 100.0)))
+                .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("654321", Money.ofCents(10000))))
                 .addHeader("Content-Type", "application/json"));
         // When
-        Optional<String> payReceiptId = bankProxy.pay(new Customer("nameIsNotImportant", "1234567890"), 100.0);
+        Optional<String> payReceiptId = bankProxy.pay(new Customer("nameIsNotImportant", "1234567890"), Money.ofCents(10000));
         // Then (Junit style as we are handling an Optional object, not a Mono/Flux reactor object)
         assertTrue(payReceiptId.isPresent());
         assertEquals("654321", payReceiptId.get());
     }
 
+    @Test
+    void payAsyncWithSuccess() throws Exception {
+        // Given
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(HttpStatus.CREATED.value())
+                .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("654321", Money.ofCents(10000))))
+                .addHeader("Content-Type", "application/json"));
+        // When (no transaction needed, the future is completed when the bank answers)
+        CompletableFuture<Optional<String>> payReceiptId = bankProxy.payAsync(new Customer("nameIsNotImportant", "1234567890"), Money.ofCents(10000));
+        // Then
+        assertEquals(Optional.of("654321"), payReceiptId.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void payAsyncRejected() throws Exception {
+        // Given
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.BAD_REQUEST.value()));
+        // When
+        CompletableFuture<Optional<String>> payReceiptId = bankProxy.payAsync(new Customer("nameIsNotImportant", "1234567890"), Money.ofCents(10000));
+        // Then
+        assertTrue(payReceiptId.get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    void payAsyncOn500shouldCompleteExceptionally() {
+        // Given
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.INTERNAL_SERVER_ERROR.value()));
+        // When
+        CompletableFuture<Optional<String>> payReceiptId = bankProxy.payAsync(new Customer("nameIsNotImportant", "1234567890"), Money.ofCents(10000));
+        // Then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> payReceiptId.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(WebClientResponseException.class, exception.getCause());
+    }
+
+    @Test
+    void payAllInASingleBatch() throws Exception {
+        // Given
+        drainRecordedRequests();
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(HttpStatus.CREATED.value())
+                .setBody(objectMapper.writeValueAsString(Arrays.asList(new PaymentReceiptDTO("654321", Money.ofCents(10000)), null)))
+                .addHeader("Content-Type", "application/json"));
+        // When
+        List<CompletableFuture<Optional<String>>> receipts = bankProxy.payAll(List.of(
+                new PaymentRequestDTO("1234567890", Money.ofCents(10000)), new PaymentRequestDTO("0987654321", Money.ofCents(5000))));
+        // Then
+        assertEquals(List.of(Optional.of("654321"), Optional.empty()), get(receipts));
+        assertEquals(1, mockWebServer.getRequestCount() - requestCountBefore);
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertEquals("/cctransactions/batch", request.getPath());
+        // the amounts are sent as exact decimal numbers
+        assertEquals("[{\"creditCard\":\"1234567890\",\"amount\":100.00},{\"creditCard\":\"0987654321\",\"amount\":50.00}]",
+                request.getBody().readUtf8());
+    }
+
+    @Test
+    void failedBatchLeavesItsPaymentsUnknown() {
+        // Given
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.INTERNAL_SERVER_ERROR.value()));
+        // When
+        List<CompletableFuture<Optional<String>>> receipts = bankProxy.payAll(List.of(
+                new PaymentRequestDTO("1234567890", Money.ofCents(10000)), new PaymentRequestDTO("0987654321", Money.ofCents(5000))));
+        // Then (the bank may have paid them: failed, not rejected)
+        for (CompletableFuture<Optional<String>> receipt : receipts) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> receipt.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(WebClientResponseException.class, exception.getCause());
+        }
+    }
+
+    private static List<Optional<String>> get(List<CompletableFuture<Optional<String>>> receipts) throws Exception {
+        return CompletableFuture.allOf(receipts.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> receipts.stream().map(CompletableFuture::join).toList())
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void payAllFallsBackToIndividualPayments() throws Exception {
+        // Given
+        bankProxy.destroy();
+        bankProxy = bankProxy(1, CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults()); // sequential, so that the responses order is known
+        drainRecordedRequests();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.NOT_FOUND.value())); // no batch endpoint
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(HttpStatus.CREATED.value())
+                .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("654321", Money.ofCents(10000))))
+                .addHeader("Content-Type", "application/json"));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.BAD_REQUEST.value()));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.INTERNAL_SERVER_ERROR.value()));
+        // When
+        List<CompletableFuture<Optional<String>>> receipts = bankProxy.payAll(List.of(new PaymentRequestDTO("1234567890", Money.ofCents(10000)),
+                new PaymentRequestDTO("0987654321", Money.ofCents(5000)), new PaymentRequestDTO("1234567890", Money.ofCents(2000))));
+        // Then (a failing payment does not fail the other ones, its outcome is unknown rather than rejected)
+        assertEquals(List.of(Optional.of("654321"), Optional.empty()), get(receipts.subList(0, 2)));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> receipts.get(2).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(WebClientResponseException.class, exception.getCause());
+        assertEquals("/cctransactions/batch", mockWebServer.takeRequest().getPath());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("/cctransactions", mockWebServer.takeRequest().getPath());
+        }
+        // the batch endpoint is not tried anymore
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.BAD_REQUEST.value()));
+        assertEquals(List.of(Optional.empty()), get(bankProxy.payAll(List.of(new PaymentRequestDTO("0987654321", Money.ofCents(5000))))));
+        assertEquals("/cctransactions", mockWebServer.takeRequest().getPath());
+    }
+
+    @Test
+    void openCircuitFailsFastUntilAProbeSucceeds() throws Exception {
+        // Given (opened by 2 failures out of the last 2 calls, closed again by 1 successful probe)
+        CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .permittedNumberOfCallsInHalfOpenState(1)
+                .build());
+        bankProxy.destroy();
+        bankProxy = bankProxy(1, circuitBreakers, BulkheadRegistry.ofDefaults());
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(BankProxy.BANK);
+        Customer customer = new Customer("nameIsNotImportant", "1234567890");
+        drainRecordedRequests();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.INTERNAL_SERVER_ERROR.value()));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.INTERNAL_SERVER_ERROR.value()));
+        assertThrows(WebClientResponseException.class, () -> bankProxy.pay(customer, Money.ofCents(10000)));
+        assertThrows(WebClientResponseException.class, () -> bankProxy.pay(customer, Money.ofCents(10000)));
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        // When-Then (rejected without calling the bank)
+        assertTrue(bankProxy.pay(customer, Money.ofCents(10000)).isEmpty());
+        assertTrue(bankProxy.payAsync(customer, Money.ofCents(10000)).get(5, TimeUnit.SECONDS).isEmpty());
+        assertEquals(List.of(Optional.empty()), get(bankProxy.payAll(List.of(new PaymentRequestDTO("1234567890", Money.ofCents(10000))))));
+        assertEquals(2, mockWebServer.getRequestCount() - requestCountBefore);
+        // the wait duration in the open state is over, the probe succeeds
+        circuitBreaker.transitionToHalfOpenState();
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(HttpStatus.CREATED.value())
+                .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("654321", Money.ofCents(10000))))
+                .addHeader("Content-Type", "application/json"));
+        assertEquals(Optional.of("654321"), bankProxy.pay(customer, Money.ofCents(10000)));
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void rejectedPaymentsDoNotOpenTheCircuit() {
+        // Given
+        CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .build());
+        bankProxy.destroy();
+        bankProxy = bankProxy(1, circuitBreakers, BulkheadRegistry.ofDefaults());
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(BankProxy.BANK);
+        Customer customer = new Customer("nameIsNotImportant", "1234567890");
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.BAD_REQUEST.value()));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.BAD_REQUEST.value()));
+        // When
+        assertTrue(bankProxy.pay(customer, Money.ofCents(10000)).isEmpty());
+        assertTrue(bankProxy.pay(customer, Money.ofCents(10000)).isEmpty());
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void batchFallbackDoesNotOpenTheCircuit() throws Exception {
+        // Given (a single failure out of the last 2 calls would open it)
+        CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .failureRateThreshold(50)
+                .build());
+        bankProxy.destroy();
+        bankProxy = bankProxy(1, circuitBreakers, BulkheadRegistry.ofDefaults());
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(BankProxy.BANK);
+        mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.METHOD_NOT_ALLOWED.value())); // no batch endpoint
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(HttpStatus.CREATED.value())
+                .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("654321", Money.ofCents(10000))))
+                .addHeader("Content-Type", "application/json"));
+        // When
+        assertEquals(List.of(Optional.of("654321")),
+                get(bankProxy.payAll(List.of(new PaymentRequestDTO("1234567890", Money.ofCents(10000))))));
+        // Then (the bank answered both calls: the missing batch endpoint is not a failure)
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+        assertEquals(2, circuitBreaker.getMetrics().getNumberOfSuccessfulCalls());
+    }
+
+    @Test
+    void bulkheadRejectsTheCallsBeyondItsLimit() throws Exception {
+        // Given (one bank call at a time)
+        bankProxy.destroy();
+        bankProxy = bankProxy(1, CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(1).maxWaitDuration(Duration.ZERO).build()));
+        Customer customer = new Customer("nameIsNotImportant", "1234567890");
+        drainRecordedRequests();
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(HttpStatus.CREATED.value())
+                .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("654321", Money.ofCents(10000))))
+                .addHeader("Content-Type", "application/json")
+                .setBodyDelay(500, TimeUnit.MILLISECONDS));
+        // When
+        CompletableFuture<Optional<String>> inFlight = bankProxy.payAsync(customer, Money.ofCents(10000));
+        CompletableFuture<Optional<String>> beyond = bankProxy.payAsync(customer, Money.ofCents(10000));
+        // Then (the second one does not wait for the first one)
+        assertTrue(beyond.get(100, TimeUnit.MILLISECONDS).isEmpty());
+        assertEquals(Optional.of("654321"), inFlight.get(5, TimeUnit.SECONDS));
+        assertEquals(1, mockWebServer.getRequestCount() - requestCountBefore);
+    }
+
+    @Test
+    void paymentsReuseThePooledConnections() throws Exception {
+        // Given (the pool metrics are published in the global registry, as in the application)
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Metrics.addRegistry(meterRegistry);
+        try {
+            drainRecordedRequests();
+            for (int i = 0; i < 2; i++) {
+                mockWebServer.enqueue(new MockResponse()
+                        .setResponseCode(HttpStatus.CREATED.value())
+                        .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("65432" + i, Money.ofCents(10000))))
+                        .addHeader("Content-Type", "application/json"));
+            }
+            // When
+            Customer customer = new Customer("nameIsNotImportant", "1234567890");
+            assertEquals(Optional.of("654320"), bankProxy.pay(customer, Money.ofCents(10000)));
+            // the connection is given back to the pool asynchronously, after the response
+            long deadline = System.currentTimeMillis() + 5000;
+            while (idleConnections(meterRegistry) != 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1.0, idleConnections(meterRegistry));
+            assertEquals(0.0, meterRegistry.get("reactor.netty.connection.provider.active.connections").tag("name", BankProxy.BANK).gauge().value());
+            assertEquals(Optional.of("654321"), bankProxy.pay(customer, Money.ofCents(10000)));
+            // Then (the second request is the second one on the kept-alive connection)
+            assertEquals(0, mockWebServer.takeRequest().getSequenceNumber());
+            assertEquals(1, mockWebServer.takeRequest().getSequenceNumber());
+            assertEquals(1.0, meterRegistry.get("reactor.netty.connection.provider.total.connections").tag("name", BankProxy.BANK).gauge().value());
+            assertEquals(0.0, meterRegistry.get("reactor.netty.connection.provider.pending.connections").tag("name", BankProxy.BANK).gauge().value());
+            // the acquire latency of the requests that had to wait for a connection
+            assertNotNull(meterRegistry.get("reactor.netty.connection.provider.pending.connections.time").tag("name", BankProxy.BANK).timer());
+        } finally {
+            Metrics.removeRegistry(meterRegistry);
+        }
+    }
+
+    private static double idleConnections(SimpleMeterRegistry meterRegistry) {
+        return meterRegistry.get("reactor.netty.connection.provider.idle.connections").tag("name", BankProxy.BANK).gauge().value();
+    }
+
     @Test
     void payWithWrongStatusReturned() throws Exception {
         // Given
         mockWebServer.enqueue(new MockResponse()
                 .setResponseCode(HttpStatus.OK.value()) // should be CREATED
-                .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("654321", 100.0)))
+                .setBody(objectMapper.writeValueAsString(new PaymentReceiptDTO("654321", Money.ofCents(10000))))
                 .addHeader("Content-Type", "application/json"));
         // When
-        Optional<String> payReceiptId = bankProxy.pay(new Customer("nameIsNotImportant", "1234567890"), 100.0);
+        Optional<String> payReceiptId = bankProxy.pay(new Customer("nameIsNotImportant", "1234567890"), Money.ofCents(10000));
         // Then (Junit style as we are handling an Optional object, not a Mono/Flux reactor object)
         assertTrue(payReceiptId.isEmpty());
     }
@@ -80,7 +365,7 @@ class BankProxyTest {
         // Given
         mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.CREATED.value()));
         // When
-        Optional<String> payReceiptId = bankProxy.pay(new Customer("nameIsNotImportant", "1234567890"), 100.0);
+        Optional<String> payReceiptId = bankProxy.pay(new Customer("nameIsNotImportant", "1234567890"), Money.ofCents(10000));
         // Then (Junit style as we are handling an Optional object, not a Mono/Flux reactor object)
         assertTrue(payReceiptId.isEmpty());
     }
@@ -90,7 +375,7 @@ class BankProxyTest {
         // Given
         mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.BAD_REQUEST.value()));
         // When
-        Optional<String> payReceiptId = bankProxy.pay(new Customer("nameIsNotImportant", "1234567890"), 100.0);
+        Optional<String> payReceiptId = bankProxy.pay(new Customer("nameIsNotImportant", "1234567890"), Money.ofCents(10000));
         // Then (Junit style as we are handling an Optional object, not a Mono/Flux reactor object)
         assertTrue(payReceiptId.isEmpty());
     }
@@ -101,7 +386,7 @@ class BankProxyTest {
         Customer customer = new Customer("nameIsNotImportant", "1234567890");
         mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.NOT_FOUND.value()));
         // When
-        assertThrows(WebClientResponseException.class, () -> bankProxy.pay(customer, 100.0));
+        assertThrows(WebClientResponseException.class, () -> bankProxy.pay(customer, Money.ofCents(10000)));
     }
 
     @Test
@@ -110,7 +395,7 @@ class BankProxyTest {
         Customer customer = new Customer("nameIsNotImportant", "1234567890");
         mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.INTERNAL_SERVER_ERROR.value()));
         // When-Then
-        assertThrows(WebClientResponseException.class, () -> bankProxy.pay(customer, 100.0));
+        assertThrows(WebClientResponseException.class, () -> bankProxy.pay(customer, Money.ofCents(10000)));
     }
 
     @Test
@@ -122,6 +407,6 @@ class BankProxyTest {
                 .setBodyDelay(10, java.util.concurrent.TimeUnit.SECONDS);
         mockWebServer.enqueue(response);
         // When-Then
-        assertThrows(RuntimeException.class, () -> bankProxy.pay(customer, 100.0));
+        assertThrows(RuntimeException.class, () -> bankProxy.pay(customer, Money.ofCents(10000)));
     }
 }
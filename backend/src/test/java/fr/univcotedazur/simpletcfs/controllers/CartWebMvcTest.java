@@ -0,0 +1,122 @@
+package fr.univcotedazur.simpletcfs.controllers;
+
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.exceptions.EmptyCartException;
+import fr.univcotedazur.simpletcfs.interfaces.CartModifier;
+import fr.univcotedazur.simpletcfs.interfaces.CartProcessor;
+import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = CartController.class, properties = "cart.validation.batch.max-carts=3")
+@AutoConfigureWebClient
+class CartWebMvcTest {
+
+    private static final String VALIDATE_URI = CustomerCareController.BASE_URI + "/{customerId}/cart/validate";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private CartModifier mockedCart;
+
+    @MockitoBean
+    private CartProcessor mockedProcessor;
+
+    @MockitoBean
+    private CatalogExplorator mockedCatalog;
+
+    private ResultActions validate(Long customerId, String idempotencyKey) throws Exception {
+        MvcResult result = mockMvc.perform(post(VALIDATE_URI, customerId).header(CartController.IDEMPOTENCY_KEY, idempotencyKey))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
+    @Test
+    void retryWithTheSameKeyReplaysTheOrder() throws Exception {
+        Order order = order(1L);
+        when(mockedProcessor.validateAsync(7L)).thenReturn(CompletableFuture.completedFuture(order));
+
+        validate(7L, "kiosk-3-42")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(header().doesNotExist(CartController.IDEMPOTENT_REPLAYED));
+        validate(7L, "kiosk-3-42")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(header().string(CartController.IDEMPOTENT_REPLAYED, "true"));
+        verify(mockedProcessor, times(1)).validateAsync(7L);
+        // another key is another validation
+        validate(7L, "kiosk-3-43").andExpect(status().isOk());
+        verify(mockedProcessor, times(2)).validateAsync(7L);
+    }
+
+    @Test
+    void failedValidationIsNotReplayed() throws Exception {
+        when(mockedProcessor.validateAsync(8L)).thenThrow(new EmptyCartException("john"));
+
+        mockMvc.perform(post(VALIDATE_URI, 8L).header(CartController.IDEMPOTENCY_KEY, "kiosk-3-44"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post(VALIDATE_URI, 8L).header(CartController.IDEMPOTENCY_KEY, "kiosk-3-44"))
+                .andExpect(status().isForbidden());
+        verify(mockedProcessor, times(2)).validateAsync(8L);
+    }
+
+    @Test
+    void idempotencyKeyIsBounded() throws Exception {
+        mockMvc.perform(post(VALIDATE_URI, 7L).header(CartController.IDEMPOTENCY_KEY, "k".repeat(256)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batchCheckoutIsBounded() throws Exception {
+        mockMvc.perform(post(CustomerCareController.BASE_URI + "/carts/validate").contentType(APPLICATION_JSON).content("[1,2,3,4]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Too many carts"));
+        // beyond the hard limit, whatever the configuration
+        String tooMany = String.join(",", Collections.nCopies(CartController.MAX_CARTS_PER_BATCH + 1, "1"));
+        mockMvc.perform(post(CustomerCareController.BASE_URI + "/carts/validate").contentType(APPLICATION_JSON).content("[" + tooMany + "]"))
+                .andExpect(status().isBadRequest());
+        verify(mockedProcessor, never()).validateAll(anyList());
+    }
+
+    private static Order order(Long id) {
+        Customer customer = mock(Customer.class);
+        when(customer.getId()).thenReturn(7L);
+        Order order = mock(Order.class);
+        when(order.getId()).thenReturn(id);
+        when(order.getCustomer()).thenReturn(customer);
+        when(order.getPrice()).thenReturn(Money.ofCents(1250));
+        when(order.getPayReceiptId()).thenReturn("RECEIPT:" + id);
+        when(order.getStatus()).thenReturn(OrderStatus.IN_PROGRESS);
+        return order;
+    }
+
+}
@@ -0,0 +1,111 @@
+package fr.univcotedazur.simpletcfs.controllers;
+
+import fr.univcotedazur.simpletcfs.dto.CustomerDTO;
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
+import fr.univcotedazur.simpletcfs.interfaces.CustomerFinder;
+import fr.univcotedazur.simpletcfs.interfaces.CustomerRegistration;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(CustomerCareController.class)
+@AutoConfigureWebClient
+class CustomerCareWebMvcTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private CustomerRegistration mockedRegistration;
+
+    @MockitoBean
+    private CustomerFinder mockedFinder;
+
+    @MockitoBean
+    private OrderFinder mockedOrderFinder;
+
+    @Test
+    void fullPageLinksToTheNextOne() throws Exception {
+        when(mockedFinder.findPage(0L, 2)).thenReturn(List.of(customer(1L), customer(2L)));
+
+        mockMvc.perform(get(CustomerCareController.BASE_URI).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].name").value("customer2"))
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/customers?after=2&limit=2>; rel=\"next\""));
+        mockMvc.perform(get(CustomerCareController.BASE_URI).param("limit", String.valueOf(CustomerCareController.MAX_PAGE_SIZE + 1)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void allCustomersAsNdjson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<CustomerDTO> action = invocation.getArgument(0);
+            action.accept(customer(1L));
+            action.accept(customer(2L));
+            return null;
+        }).when(mockedFinder).forEachCustomer(any());
+
+        MvcResult streaming = mockMvc.perform(get(CustomerCareController.BASE_URI).accept(APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"name\":\"customer1\",\"creditCard\":\"1234567890\"}\n" +
+                        "{\"id\":2,\"name\":\"customer2\",\"creditCard\":\"1234567890\"}\n"));
+    }
+
+    @Test
+    void customerOrdersInStatusByPages() throws Exception {
+        when(mockedOrderFinder.findPageForCustomerWithStatus(1L, OrderStatus.IN_PROGRESS, 0L, 2)).thenReturn(List.of(
+                new OrderDTO(3L, 1L, Money.ofCents(260), "receipt3", OrderStatus.IN_PROGRESS),
+                new OrderDTO(7L, 1L, Money.ofCents(520), "receipt7", OrderStatus.IN_PROGRESS)));
+        when(mockedOrderFinder.findPageForCustomerWithStatus(2L, OrderStatus.READY, 0L, 100)).thenReturn(List.of());
+        when(mockedFinder.retrieveCustomer(2L)).thenThrow(new CustomerIdNotFoundException(2L));
+
+        mockMvc.perform(get(CustomerCareController.BASE_URI + "/1/orders").param("status", "IN_PROGRESS").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].id").value(7))
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/customers/1/orders?status=IN_PROGRESS&after=7&limit=2>; rel=\"next\""));
+        verify(mockedFinder, never()).retrieveCustomer(1L); // not looked up when it has orders
+        mockMvc.perform(get(CustomerCareController.BASE_URI + "/2/orders").param("status", "READY"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get(CustomerCareController.BASE_URI + "/1/orders").param("status", "BURNT"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static CustomerDTO customer(Long id) {
+        return new CustomerDTO(id, "customer" + id, "1234567890");
+    }
+
+}
@@ -0,0 +1,178 @@
+package fr.univcotedazur.simpletcfs.controllers;
+
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
+import fr.univcotedazur.simpletcfs.dto.OrderStatusEvent;
+import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.entities.Order;
+import fr.univcotedazur.simpletcfs.entities.OrderStatus;
+import fr.univcotedazur.simpletcfs.exceptions.OrderIdNotFoundException;
+import fr.univcotedazur.simpletcfs.interfaces.OrderFinder;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusListener;
+import fr.univcotedazur.simpletcfs.interfaces.OrderStatusTracker;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(OrderController.class)
+@AutoConfigureWebClient
+class OrderWebMvcTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private OrderFinder mockedOrderFinder;
+
+    @MockitoBean
+    private OrderStatusTracker mockedStatusTracker;
+
+    @Test
+    void fullPageLinksToTheNextOne() throws Exception {
+        when(mockedOrderFinder.findPage(0L, 2)).thenReturn(List.of(orderDTO(1L), orderDTO(2L)));
+
+        mockMvc.perform(get(OrderController.BASE_URI).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].id").value(2))
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/orders?after=2&limit=2>; rel=\"next\""));
+    }
+
+    @Test
+    void lastPageHasNoNextLink() throws Exception {
+        when(mockedOrderFinder.findPage(2L, 2)).thenReturn(List.of(orderDTO(3L)));
+
+        mockMvc.perform(get(OrderController.BASE_URI).param("after", "2").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+    }
+
+    @Test
+    void pageSizeIsBounded() throws Exception {
+        mockMvc.perform(get(OrderController.BASE_URI).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(OrderController.BASE_URI).param("limit", String.valueOf(OrderController.MAX_PAGE_SIZE + 1)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void allOrdersAsNdjson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<OrderDTO> action = invocation.getArgument(0);
+            action.accept(orderDTO(1L));
+            action.accept(orderDTO(2L));
+            return null;
+        }).when(mockedOrderFinder).forEachOrder(any());
+
+        MvcResult streaming = mockMvc.perform(get(OrderController.BASE_URI).accept(APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted()) // the body is written asynchronously
+                .andReturn();
+        mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"customerId\":7,\"price\":12.50,\"payReceiptId\":\"RECEIPT:1\",\"status\":\"IN_PROGRESS\"}\n" +
+                        "{\"id\":2,\"customerId\":7,\"price\":12.50,\"payReceiptId\":\"RECEIPT:2\",\"status\":\"IN_PROGRESS\"}\n"));
+    }
+
+    @Test
+    void orderStatusChangesAsServerSentEvents() throws Exception {
+        Order order = order(1L);
+        when(mockedOrderFinder.findById(1L)).thenReturn(Optional.of(order));
+
+        MvcResult streaming = mockMvc.perform(get(OrderController.BASE_URI + "/1/events").accept(TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        ArgumentCaptor<OrderStatusListener> listener = ArgumentCaptor.forClass(OrderStatusListener.class);
+        verify(mockedStatusTracker).subscribe(eq(1L), listener.capture());
+        listener.getValue().accept(new OrderStatusEvent(1L, 7L, OrderStatus.READY)); // completes the stream
+        mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "event:status\ndata:{\"orderId\":1,\"customerId\":7,\"status\":\"IN_PROGRESS\"}\n\n" +
+                        "event:status\ndata:{\"orderId\":1,\"customerId\":7,\"status\":\"READY\"}\n\n"));
+        verify(mockedStatusTracker).unsubscribe(1L, listener.getValue());
+    }
+
+    @Test
+    void readyDeliveredBeforeTheFirstStatus() throws Exception {
+        Order order = order(1L); // read IN_PROGRESS
+        when(mockedOrderFinder.findById(1L)).thenReturn(Optional.of(order));
+        doAnswer(invocation -> { // the change delivered by the tracker before the first status is sent
+            OrderStatusListener listener = invocation.getArgument(1);
+            listener.accept(new OrderStatusEvent(1L, 7L, OrderStatus.READY));
+            return null;
+        }).when(mockedStatusTracker).subscribe(eq(1L), any());
+
+        MvcResult streaming = mockMvc.perform(get(OrderController.BASE_URI + "/1/events").accept(TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "event:status\ndata:{\"orderId\":1,\"customerId\":7,\"status\":\"READY\"}\n\n"));
+    }
+
+    @Test
+    void unknownOrder() throws Exception {
+        when(mockedOrderFinder.retrieveOrderStatus(42L)).thenThrow(new OrderIdNotFoundException(42L));
+
+        mockMvc.perform(get(OrderController.BASE_URI + "/42/status"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Order not found"));
+    }
+
+    @Test
+    void followingAnUnknownOrder() throws Exception {
+        when(mockedOrderFinder.findById(42L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get(OrderController.BASE_URI + "/42/events").accept(TEXT_EVENT_STREAM))
+                .andExpect(status().isNotFound());
+        verify(mockedStatusTracker).unsubscribe(eq(42L), any());
+    }
+
+    private static OrderDTO orderDTO(Long id) {
+        return new OrderDTO(id, 7L, Money.ofCents(1250), "RECEIPT:" + id, OrderStatus.IN_PROGRESS);
+    }
+
+    private static Order order(Long id) {
+        Customer customer = mock(Customer.class);
+        when(customer.getId()).thenReturn(7L);
+        Order order = mock(Order.class);
+        when(order.getId()).thenReturn(id);
+        when(order.getCustomer()).thenReturn(customer);
+        when(order.getPrice()).thenReturn(Money.ofCents(1250));
+        when(order.getPayReceiptId()).thenReturn("RECEIPT:" + id);
+        when(order.getStatus()).thenReturn(OrderStatus.IN_PROGRESS);
+        return order;
+    }
+
+}
@@ -1,7 +1,11 @@
 package fr.univcotedazur.simpletcfs.controllers;
 
-import fr.univcotedazur.simpletcfs.entities.Cookies;
+import fr.univcotedazur.simpletcfs.dto.RecipeDTO;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import fr.univcotedazur.simpletcfs.exceptions.InvalidSearchPatternException;
+import fr.univcotedazur.simpletcfs.exceptions.UnknownRecipeException;
 import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
+import fr.univcotedazur.simpletcfs.interfaces.CatalogModifier;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
@@ -9,13 +13,17 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -31,10 +39,15 @@ class RecipeWebMvcTest {
     @MockitoBean
     private CatalogExplorator mockedCat; // the real Catalog component is not created, we have to mock it
 
+    @MockitoBean
+    private CatalogModifier mockedCatModifier;
+
+    private static final RecipeDTO CHOCOLALALA = new RecipeDTO((short) 1, "CHOCOLALALA", "Chocolalala", Money.ofCents(130));
+
     @Test
     void recipesRestTest() throws Exception {
         when(mockedCat.listPreMadeRecipes())
-                .thenReturn(Set.of(Cookies.CHOCOLALALA, Cookies.DARK_TEMPTATION)); // only 2 of the 3 enum values
+                .thenReturn(Set.of("CHOCOLALALA", "DARK_TEMPTATION")); // only 2 of the 3 initial recipes
 
         mockMvc.perform(get(RecipeController.BASE_URI)
                         .contentType(APPLICATION_JSON))
@@ -46,4 +59,62 @@ class RecipeWebMvcTest {
                 .andExpect(jsonPath("$", hasItem("DARK_TEMPTATION")));
     }
 
+    @Test
+    void recipesSearchTest() throws Exception {
+        when(mockedCat.exploreCatalogue(".*CHOCO.*")).thenReturn(Set.of("CHOCOLALALA"));
+        when(mockedCat.exploreCatalogue("[")).thenThrow(new PatternSyntaxException("Unclosed character class", "[", 0));
+        when(mockedCat.exploreCatalogue("(a+)+b")).thenThrow(new InvalidSearchPatternException("Search pattern too complex: (a+)+b"));
+
+        mockMvc.perform(get(RecipeController.BASE_URI).param("pattern", ".*CHOCO.*"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$", hasItem("CHOCOLALALA")));
+        mockMvc.perform(get(RecipeController.BASE_URI).param("pattern", "["))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid search pattern"));
+        mockMvc.perform(get(RecipeController.BASE_URI).param("pattern", "(a+)+b"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid search pattern"))
+                .andExpect(jsonPath("$.details").value("Search pattern too complex: (a+)+b"));
+    }
+
+    @Test
+    void recipeLookupsTest() throws Exception {
+        when(mockedCat.findByName("CHOCOLALALA")).thenReturn(Optional.of(CHOCOLALALA));
+        when(mockedCat.findByName("UNKNOWN")).thenReturn(Optional.empty());
+        when(mockedCat.findByNamePrefix("CHOCO")).thenReturn(List.of(CHOCOLALALA));
+        when(mockedCat.findByPriceRange(Money.ofCents(100), Money.ofCents(150))).thenReturn(List.of(CHOCOLALALA));
+
+        mockMvc.perform(get(RecipeController.BASE_URI + "/CHOCOLALALA"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.label").value("Chocolalala"))
+                .andExpect(jsonPath("$.price").value(1.30));
+        mockMvc.perform(get(RecipeController.BASE_URI + "/UNKNOWN"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Recipe not found"));
+        mockMvc.perform(get(RecipeController.BASE_URI).param("prefix", "CHOCO"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("CHOCOLALALA"));
+        mockMvc.perform(get(RecipeController.BASE_URI).param("minPrice", "1").param("maxPrice", "1.5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void priceUpdateTest() throws Exception {
+        when(mockedCatModifier.updatePrice("CHOCOLALALA", Money.ofCents(150))).thenReturn(new RecipeDTO((short) 1, "CHOCOLALALA", "Chocolalala", Money.ofCents(150)));
+        when(mockedCatModifier.updatePrice("UNKNOWN", Money.ofCents(150))).thenThrow(new UnknownRecipeException("UNKNOWN"));
+
+        mockMvc.perform(put(RecipeController.BASE_URI + "/CHOCOLALALA/price").contentType(APPLICATION_JSON).content("1.5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(1.5));
+        mockMvc.perform(put(RecipeController.BASE_URI + "/UNKNOWN/price").contentType(APPLICATION_JSON).content("1.5"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put(RecipeController.BASE_URI + "/CHOCOLALALA/price").contentType(APPLICATION_JSON).content("-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put(RecipeController.BASE_URI + "/CHOCOLALALA/price").contentType(APPLICATION_JSON).content("1.505"))
+                .andExpect(status().isBadRequest()); // not a number of cents
+    }
+
 }
@@ -1,6 +1,5 @@
 package fr.univcotedazur.simpletcfs.cucumber.catalog;
 
-import fr.univcotedazur.simpletcfs.entities.Cookies;
 import fr.univcotedazur.simpletcfs.interfaces.CatalogExplorator;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
@@ -15,7 +14,7 @@ public class BrowsingCatalog {
     @Autowired
     private CatalogExplorator catalogExplorator;
 
-    private Set<Cookies> cookiesSet;
+    private Set<String> cookiesSet;
 
     @When("one check the catalog contents")
     public void oneCheckTheCatalogContents() {
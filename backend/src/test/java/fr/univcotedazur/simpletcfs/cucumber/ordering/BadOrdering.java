@@ -1,6 +1,7 @@
 package fr.univcotedazur.simpletcfs.cucumber.ordering;
 
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.exceptions.AlreadyExistingCustomerException;
 import fr.univcotedazur.simpletcfs.exceptions.CustomerIdNotFoundException;
 import fr.univcotedazur.simpletcfs.exceptions.EmptyCartException;
@@ -18,10 +19,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.Mockito.when;
 
 @Transactional
@@ -47,7 +48,8 @@ public class BadOrdering {
     @Before
     public void settingUpContext() throws PaymentException {
         customerRepository.deleteAll();
-        when(bankMock.pay(any(Customer.class), anyDouble())).thenReturn(Optional.of("payReceiptIdOK"));
+        when(bankMock.pay(any(Customer.class), any(Money.class))).thenReturn(Optional.of("payReceiptIdOK"));
+        when(bankMock.payAsync(any(Customer.class), any(Money.class))).thenReturn(CompletableFuture.completedFuture(Optional.of("payReceiptIdOK")));
     }
 
     @Given("a bad customer")
@@ -13,12 +13,13 @@ import io.cucumber.java.en.When;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.Mockito.when;
 
 @Transactional
@@ -42,6 +43,9 @@ public class OrderingCookies {
     @Autowired
     private CustomerFinder customerFinder;
 
+    @Autowired
+    private CatalogExplorator catalogExplorator;
+
     @Autowired // Spring/Cucumber bug workaround: autowired the mock declared in the Config class
     private Bank bankMock;
 
@@ -52,7 +56,8 @@ public class OrderingCookies {
     public void settingUpContext() throws PaymentException {
         customerRepository.deleteAll();
         orderRepository.deleteAll();
-        when(bankMock.pay(any(Customer.class), anyDouble())).thenReturn(Optional.of("payReceiptIdOK"));
+        when(bankMock.pay(any(Customer.class), any(Money.class))).thenReturn(Optional.of("payReceiptIdOK"));
+        when(bankMock.payAsync(any(Customer.class), any(Money.class))).thenReturn(CompletableFuture.completedFuture(Optional.of("payReceiptIdOK")));
     }
 
     @Given("a customer named {string} with credit card {string}")
@@ -74,27 +79,27 @@ public class OrderingCookies {
     @When("{string} orders {int} x {string}")
     public void customerOrders(String customerName, int howMany, String recipe) throws NegativeQuantityException, CustomerIdNotFoundException {
         this.customerId = customerFinder.findByName(customerName).get().getId();
-        Cookies cookie = Cookies.valueOf(recipe);
+        short cookie = catalogExplorator.findByName(recipe).orElseThrow().id();
         cartModifier.update(customerId, new Item(cookie, howMany));
     }
 
     @And("the cart contains the following item: {int} x {string}")
     public void theCartContainsTheFollowingItem(int howMany, String recipe) throws CustomerIdNotFoundException {
-        Item expected = new Item(Cookies.valueOf(recipe), howMany);
+        Item expected = new Item(catalogExplorator.findByName(recipe).orElseThrow().id(), howMany);
         assertTrue(cartModifier.cartContent(this.customerId).contains(expected));
     }
 
     @And("{string} decides not to buy {int} x {string}")
     public void customerDecidesNotToBuy(String customerName, int howMany, String recipe) throws NegativeQuantityException, CustomerIdNotFoundException {
         this.customerId = customerFinder.findByName(customerName).get().getId();
-        Cookies cookie = Cookies.valueOf(recipe);
+        short cookie = catalogExplorator.findByName(recipe).orElseThrow().id();
         cartModifier.update(this.customerId, new Item(cookie, -howMany));
     }
 
     @Then("the price of {string}'s cart is equals to {double}")
     public void thePriceOfSebSCartIsEqualsTo(String customerName, double expectedPrice) throws CustomerIdNotFoundException {
         this.customerId = customerFinder.findByName(customerName).get().getId();
-        assertEquals(expectedPrice, cartProcessor.cartPrice(customerId), 0.01);
+        assertEquals(Money.of(BigDecimal.valueOf(expectedPrice)), cartProcessor.cartPrice(customerId));
     }
 
     @And("{string} validates the cart and pays through the bank")
@@ -106,7 +111,7 @@ public class OrderingCookies {
     @Then("the order amount is equals to {double}")
     public void theOrderAmountIsEqualsTo(double expectedPrice) {
         Order order = orderRepository.getById(orderId); // This shows that some business component handling Orders is missing
-        assertEquals(expectedPrice, order.getPrice(), 0.01);
+        assertEquals(Money.of(BigDecimal.valueOf(expectedPrice)), order.getPrice());
     }
 
     @Then("the order status is {string}")
@@ -1,20 +1,34 @@
 package fr.univcotedazur.simpletcfs.repositories;
 
+import fr.univcotedazur.simpletcfs.dto.CustomerDTO;
+import fr.univcotedazur.simpletcfs.entities.Cookies;
 import fr.univcotedazur.simpletcfs.entities.Customer;
+import fr.univcotedazur.simpletcfs.entities.Item;
+import jakarta.persistence.EntityManager;
 import jakarta.validation.ConstraintViolationException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
-@DataJpaTest // Only run a test container with the JPA layer (only repositories are up)
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true") // Only run a test container with the JPA layer (only repositories are up)
 // @DataJpaTest is "transactional rollback by default
 class CustomerRepositoryTest {
 
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
     @Test
     void testIdGenerationAndUnicity() {
         Customer john = new Customer("john", "1234567890");
@@ -44,4 +58,75 @@ class CustomerRepositoryTest {
         Assertions.assertThrows(ConstraintViolationException.class, () -> customerRepository.saveAndFlush(new Customer("badguy", "creditCard")));
         Assertions.assertThrows(ConstraintViolationException.class, () -> customerRepository.saveAndFlush(new Customer("badguy", "123456789")));
     }
+
+    @Test
+    void testListingsAreASingleStatement() {
+        for (String name : List.of("john", "jane", "jack")) {
+            Customer customer = new Customer(name, "1234567890");
+            customer.setQuantity(Cookies.CHOCOLALALA.getId(), 2);
+            customerRepository.save(customer);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<CustomerDTO> page = customerRepository.findCustomerDTOsAfter(0L, Limit.of(2));
+        Assertions.assertEquals(List.of("john", "jane"), page.stream().map(CustomerDTO::name).toList());
+        Assertions.assertEquals(1, customerRepository.findCustomerDTOsAfter(page.get(1).id(), Limit.of(2)).size());
+        try (Stream<CustomerDTO> all = customerRepository.streamAllCustomerDTOs()) {
+            Assertions.assertEquals(3, all.count());
+        }
+        // one statement per listing, no entity loaded hence no cart fetched
+        Assertions.assertEquals(3, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(0, statistics.getEntityLoadCount());
+        Assertions.assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void testCartIsOnlyLoadedWithTheGraph() {
+        Customer john = new Customer("john", "1234567890");
+        john.setQuantity(Cookies.CHOCOLALALA.getId(), 2);
+        Long johnId = customerRepository.save(john).getId();
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        // the non-cart uses read the customer row only
+        Customer withoutCart = customerRepository.findById(johnId).orElseThrow();
+        Assertions.assertFalse(entityManager.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(withoutCart, "cart"));
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(0, statistics.getCollectionLoadCount());
+        entityManager.clear();
+        statistics.clear();
+        // the cart operations read the customer and the cart with a single (joined) statement
+        Customer withCart = customerRepository.findWithCartById(johnId).orElseThrow();
+        Assertions.assertTrue(entityManager.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(withCart, "cart"));
+        Assertions.assertEquals(Set.of(new Item(Cookies.CHOCOLALALA.getId(), 2)), withCart.getCart());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(1, statistics.getCollectionLoadCount());
+        Assertions.assertEquals(0, statistics.getCollectionFetchCount()); // no additional select for the cart
+    }
+
+    @Test
+    void testCartUpdateWritesASingleRow() {
+        Customer john = new Customer("john", "1234567890");
+        john.setQuantity(Cookies.CHOCOLALALA.getId(), 2);
+        john.setQuantity(Cookies.DARK_TEMPTATION.getId(), 3);
+        john.setQuantity(Cookies.SOO_CHOCOLATE.getId(), 1);
+        Long johnId = customerRepository.save(john).getId();
+        entityManager.flush();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        for (int quantity : new int[] {5, 0}) { // an update of the row, then its deletion
+            entityManager.clear();
+            Customer customer = customerRepository.findWithCartById(johnId).orElseThrow();
+            statistics.clear();
+            customer.setQuantity(Cookies.CHOCOLALALA.getId(), quantity);
+            entityManager.flush();
+            Assertions.assertEquals(1, statistics.getPrepareStatementCount()); // the other cookies are left untouched
+            Assertions.assertEquals(0, statistics.getCollectionRecreateCount());
+        }
+        entityManager.clear();
+        Assertions.assertEquals(Set.of(new Item(Cookies.DARK_TEMPTATION.getId(), 3), new Item(Cookies.SOO_CHOCOLATE.getId(), 1)),
+                customerRepository.findWithCartById(johnId).orElseThrow().getCart());
+    }
 }
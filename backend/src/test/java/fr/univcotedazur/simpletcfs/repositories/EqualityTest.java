@@ -3,6 +3,7 @@ package fr.univcotedazur.simpletcfs.repositories;
 import fr.univcotedazur.simpletcfs.entities.Cookies;
 import fr.univcotedazur.simpletcfs.entities.Customer;
 import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.entities.Order;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,7 +22,7 @@ class EqualityTest {
     @BeforeEach
     void setup() {
         john = new Customer("john", "1234567890");
-        johnsOrder = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA, 2))), 20.4, "payReceiptIdOK");
+        johnsOrder = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA.getId(), 2))), Money.ofCents(2040), "payReceiptIdOK");
     }
 
     @Test
@@ -46,7 +47,7 @@ class EqualityTest {
     @Test
     void testOrderEquals() {
         assertEquals(johnsOrder, johnsOrder);
-        Order otherOrder = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA, 2))), 20.4, "payReceiptIdOK");
+        Order otherOrder = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA.getId(), 2))), Money.ofCents(2040), "payReceiptIdOK");
         assertEquals(johnsOrder, otherOrder);
         assertEquals(otherOrder, johnsOrder);
     }
@@ -3,6 +3,7 @@ package fr.univcotedazur.simpletcfs.repositories;
 import fr.univcotedazur.simpletcfs.entities.Cookies;
 import fr.univcotedazur.simpletcfs.entities.Customer;
 import fr.univcotedazur.simpletcfs.entities.Item;
+import fr.univcotedazur.simpletcfs.entities.Money;
 import fr.univcotedazur.simpletcfs.entities.Order;
 import fr.univcotedazur.simpletcfs.interfaces.Bank;
 import fr.univcotedazur.simpletcfs.interfaces.OrderModifier;
@@ -48,7 +49,7 @@ class NonTransactionalTest { // To show errors that happen when we are not in a
         Customer john = new Customer("john", "1234567890");
         Customer savedJohn= customerRepository.save(john);
         assertEquals(0, savedJohn.getOrders().size());
-        Order createdOrder = new Order(savedJohn, new HashSet<>(Arrays.asList(new Item(Cookies.CHOCOLALALA,2))), 20.4, "payReceiptIdOK");
+        Order createdOrder = new Order(savedJohn, new HashSet<>(Arrays.asList(new Item(Cookies.CHOCOLALALA.getId(),2))), Money.ofCents(2040), "payReceiptIdOK");
         // The order is normally added to the customer in the Cashier component ->  is normal as it is a business
         // component, and linking the two objects is done only if everything goes well in the business process
         savedJohn.addOrder(createdOrder);
@@ -82,10 +83,10 @@ class NonTransactionalTest { // To show errors that happen when we are not in a
     void testMandatoryTransaction() {
         Customer johnOutOfTransaction = customerRepository.findCustomerByName("john").get();
         Assertions.assertThrows( org.springframework.transaction.IllegalTransactionStateException.class, () -> {
-            payment.payOrderFromCart(johnOutOfTransaction, 20.4);
+            payment.payOrderFromCart(johnOutOfTransaction, Money.ofCents(2040));
         });
         Assertions.assertThrows( org.springframework.transaction.IllegalTransactionStateException.class, () -> {
-            bank.pay(johnOutOfTransaction, 20.4);
+            bank.pay(johnOutOfTransaction, Money.ofCents(2040));
         });
         Order orderOutoOfTransaction = orderRepository.findById(orderId).get();
         Assertions.assertThrows( org.springframework.transaction.IllegalTransactionStateException.class, () -> {
@@ -1,12 +1,19 @@
 package fr.univcotedazur.simpletcfs.repositories;
 
+import fr.univcotedazur.simpletcfs.dto.OrderDTO;
 import fr.univcotedazur.simpletcfs.entities.*;
+import fr.univcotedazur.simpletcfs.entities.Money;
+import jakarta.persistence.EntityManager;
 import jakarta.validation.ConstraintViolationException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -15,8 +22,9 @@ import org.springframework.data.domain.Sort;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-@DataJpaTest // Only run a test container with the JPA layer (only repositories are up)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true") // Only run a test container with the JPA layer (only repositories are up)
 // @DataJpaTest is "transactional rollback by default"
 class OrderRepositoryTest {
 
@@ -26,6 +34,9 @@ class OrderRepositoryTest {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
     private Long johnId;
     private Long orderId;
 
@@ -33,7 +44,7 @@ class OrderRepositoryTest {
     void setup() {
         Customer john = customerRepository.save(new Customer("john", "1234567890"));
         johnId = john.getId();
-        Order createdOrder = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA, 2))), 20.4, "payReceiptIdOK");
+        Order createdOrder = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA.getId(), 2))), Money.ofCents(2040), "payReceiptIdOK");
         // The order is normally added to the customer in the Cashier component ->  is normal as it is a business
         // component, and linking the two objects is done only if everything goes well in the business process
         john.addOrder(createdOrder);
@@ -44,10 +55,10 @@ class OrderRepositoryTest {
     @Test
     void testEmptyPriceAtOrderCreation() {
         Customer john = customerRepository.findById(johnId).get();
-        Order orderWithZeroPrice = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA, 5))), 0, "payReceiptIdOK");
+        Order orderWithZeroPrice = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA.getId(), 5))), Money.ZERO, "payReceiptIdOK");
         john.addOrder(orderWithZeroPrice);
         Assertions.assertThrows(ConstraintViolationException.class, () -> orderRepository.saveAndFlush(orderWithZeroPrice));
-        Order orderWithEmptyReceiptId = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA, 5))), 20.4, "");
+        Order orderWithEmptyReceiptId = new Order(john, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA.getId(), 5))), Money.ofCents(2040), "");
         john.addOrder(orderWithEmptyReceiptId);
         Assertions.assertThrows(ConstraintViolationException.class, () -> orderRepository.saveAndFlush(orderWithEmptyReceiptId));
     }
@@ -91,7 +102,7 @@ class OrderRepositoryTest {
                 Sort.by(Sort.Direction.DESC,"id")).size());
 
         Order retrievedOrder = validatedOrders.get(0);
-        Assertions.assertEquals(Cookies.CHOCOLALALA,retrievedOrder.getItems().stream().findFirst().get().getCookie());
+        Assertions.assertEquals(Cookies.CHOCOLALALA.getId(),retrievedOrder.getItems().stream().findFirst().get().getRecipeId());
         Assertions.assertEquals(2,retrievedOrder.getItems().stream().findFirst().get().getQuantity());
         Assertions.assertEquals(john,retrievedOrder.getCustomer());
 
@@ -100,12 +111,53 @@ class OrderRepositoryTest {
                 Sort.by(Sort.Direction.DESC,"id")).size());
     }
 
+    @Test
+    void testOrderDTOsForCustomerWithStatus() {
+        Customer john = customerRepository.findById(johnId).get();
+        Customer jane = customerRepository.save(new Customer("jane", "0987654321"));
+        Order secondOrder = orderRepository.save(new Order(john, new HashSet<>(List.of(new Item(Cookies.DARK_TEMPTATION.getId(), 1))), Money.ofCents(1020), "payReceiptId2"));
+        Order inProgress = new Order(john, new HashSet<>(List.of(new Item(Cookies.DARK_TEMPTATION.getId(), 3))), Money.ofCents(3060), "payReceiptId3");
+        inProgress.setStatus(OrderStatus.IN_PROGRESS);
+        orderRepository.save(inProgress);
+        orderRepository.save(new Order(jane, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA.getId(), 1))), Money.ofCents(1020), "payReceiptId4"));
+        entityManager.flush();
+        entityManager.clear();
+        // keyset pages of the validated orders of john, by increasing id
+        Assertions.assertEquals(List.of(new OrderDTO(orderId, johnId, Money.ofCents(2040), "payReceiptIdOK", OrderStatus.VALIDATED)),
+                orderRepository.findOrderDTOsForCustomerWithStatus(johnId, OrderStatus.VALIDATED, 0L, Limit.of(1)));
+        Assertions.assertEquals(List.of(new OrderDTO(secondOrder.getId(), johnId, Money.ofCents(1020), "payReceiptId2", OrderStatus.VALIDATED)),
+                orderRepository.findOrderDTOsForCustomerWithStatus(johnId, OrderStatus.VALIDATED, orderId, Limit.of(10)));
+        Assertions.assertEquals(List.of(inProgress.getId()), orderRepository.findOrderDTOsForCustomerWithStatus(johnId,
+                OrderStatus.IN_PROGRESS, 0L, Limit.of(10)).stream().map(OrderDTO::id).toList());
+        Assertions.assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount()); // nothing managed
+    }
+
+    @Test
+    void testOrderListingsAreProjected() {
+        Customer jane = customerRepository.save(new Customer("jane", "0987654321"));
+        Order janeOrder = orderRepository.save(new Order(jane, new HashSet<>(List.of(new Item(Cookies.CHOCOLALALA.getId(), 1))), Money.ofCents(1020), "payReceiptId2"));
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        Assertions.assertEquals(List.of(new OrderDTO(orderId, johnId, Money.ofCents(2040), "payReceiptIdOK", OrderStatus.VALIDATED)),
+                orderRepository.findOrderDTOsAfter(0L, Limit.of(1)));
+        Assertions.assertEquals(List.of(janeOrder.getId()), orderRepository.findOrderDTOsAfter(orderId, Limit.of(10)).stream().map(OrderDTO::id).toList());
+        try (Stream<OrderDTO> all = orderRepository.streamAllOrderDTOs()) {
+            Assertions.assertEquals(List.of(johnId, jane.getId()), all.map(OrderDTO::customerId).toList());
+        }
+        // one statement per listing: no order loaded, hence no select of their customers
+        Assertions.assertEquals(3, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(0, statistics.getEntityLoadCount());
+        Assertions.assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount()); // nothing managed
+    }
+
     @Test
     void testAllOrdersByPageable() {
         Customer john = customerRepository.findCustomerByName("john").get();
         Order secondOrder = new Order(john, new HashSet<>(List.of(
-                new Item(Cookies.CHOCOLALALA,5),
-                new Item(Cookies.DARK_TEMPTATION,2))), 48.6, "payReceiptIdOK");
+                new Item(Cookies.CHOCOLALALA.getId(),5),
+                new Item(Cookies.DARK_TEMPTATION.getId(),2))), Money.ofCents(4860), "payReceiptIdOK");
         orderRepository.saveAndFlush(secondOrder);
         // Now the order set contains 2 orders
         int pageNumber = 0; // page numnbering starts at 0...
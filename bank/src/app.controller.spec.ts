@@ -50,4 +50,29 @@ describe('AppController', () => {
       expect(appController.getAllTransactions().length).toBe(0);
     });
   });
+
+  describe('payAllByCreditCard()', () => {
+    it('should return one receipt per payment in the same order, null for a rejected one', () => {
+      const paymentReceiptDtos = appController.payAllByCreditCard([
+        goodPaymentDto,
+        badPaymentDto,
+        goodPaymentDto,
+      ]);
+      expect(paymentReceiptDtos.length).toBe(3);
+      expect(
+        paymentReceiptDtos[0]?.payReceiptId.substring(0, 8),
+      ).toBe('RECEIPT:');
+      expect(paymentReceiptDtos[1]).toBeNull();
+      expect(paymentReceiptDtos[2]?.amount).toBe(goodPaymentDto.amount);
+      expect(appController.getAllTransactions().length).toBe(2);
+    });
+
+    it('should reject a body that is not a list', () => {
+      expect(() =>
+        appController.payAllByCreditCard(
+          goodPaymentDto as unknown as PaymentRequestDto[],
+        ),
+      ).toThrow(HttpException);
+    });
+  });
 });
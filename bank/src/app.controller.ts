@@ -31,4 +31,17 @@ export class AppController {
       );
     }
   }
+
+  @Post('batch')
+  payAllByCreditCard(
+    @Body() paymentRequestDtos: PaymentRequestDto[],
+  ): (PaymentReceiptDto | null)[] {
+    if (!Array.isArray(paymentRequestDtos)) {
+      throw new HttpException(
+        'a list of payment requests is expected',
+        HttpStatus.BAD_REQUEST,
+      );
+    }
+    return this.appService.payAll(paymentRequestDtos);
+  }
 }
@@ -39,4 +39,20 @@ export class AppService {
       throw new PaymentRejectedException(paymentRequestDto.amount);
     }
   }
+
+  // one receipt per request, in the same order, null for a rejected payment
+  payAll(
+    paymentRequestDtos: PaymentRequestDto[],
+  ): (PaymentReceiptDto | null)[] {
+    return paymentRequestDtos.map((paymentRequestDto) => {
+      try {
+        return this.pay(paymentRequestDto);
+      } catch (e) {
+        if (e instanceof PaymentRejectedException) {
+          return null;
+        }
+        throw e;
+      }
+    });
+  }
 }
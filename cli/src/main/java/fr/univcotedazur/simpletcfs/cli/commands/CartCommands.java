@@ -3,7 +3,6 @@ package fr.univcotedazur.simpletcfs.cli.commands;
 import fr.univcotedazur.simpletcfs.cli.CliContext;
 import fr.univcotedazur.simpletcfs.cli.model.CartElement;
 import fr.univcotedazur.simpletcfs.cli.model.CliOrder;
-import fr.univcotedazur.simpletcfs.cli.model.CookieEnum;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
@@ -40,7 +39,7 @@ public class CartCommands {
     }
 
     @ShellMethod("Add cookie to cart of customer (add-to-cart CUSTOMER_NAME COOKIE_NAME QUANTITY)")
-    public CartElement addToCart(String name, CookieEnum cookie, int quantity) {
+    public CartElement addToCart(String name, String cookie, int quantity) {
         // Spring-shell is catching exception (could be the case if name is not from a valid customer)
         return webClient.post()
                 .uri(getUriForCustomer(name))
@@ -51,7 +50,7 @@ public class CartCommands {
     }
 
     @ShellMethod("Remove cookie from cart of customer (remove-from-cart CUSTOMER_NAME COOKIE_NAME QUANTITY)")
-    public CartElement removeFromCart(String name, CookieEnum cookie, int quantity) {
+    public CartElement removeFromCart(String name, String cookie, int quantity) {
         return addToCart(name, cookie, -quantity);
     }
 
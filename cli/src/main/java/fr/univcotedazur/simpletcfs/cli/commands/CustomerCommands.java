@@ -3,16 +3,14 @@ package fr.univcotedazur.simpletcfs.cli.commands;
 import fr.univcotedazur.simpletcfs.cli.CliContext;
 import fr.univcotedazur.simpletcfs.cli.model.CliCustomer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
 
-import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @ShellComponent
 public class CustomerCommands {
@@ -50,16 +48,15 @@ public class CustomerCommands {
     public String updateCustomers() {
         Map<String, CliCustomer> customerMap = cliContext.getCustomers();
         customerMap.clear();
-        CliCustomer[] customers = webClient
+        Map<String, CliCustomer> customers = webClient
                 .get()
                 .uri(BASE_URI)
+                .accept(MediaType.APPLICATION_NDJSON) // all customers, streamed (the JSON array is paginated)
                 .retrieve()
-                .bodyToMono(CliCustomer[].class)
-                .switchIfEmpty(Mono.just(new CliCustomer[0])) // Provide default empty array if response body is null
+                .bodyToFlux(CliCustomer.class)
+                .collectMap(CliCustomer::getName, Function.identity())
                 .block();
-        customerMap.putAll(Arrays.stream(customers)
-                        .collect(Collectors.toMap(CliCustomer::getName, Function.identity()))
-        );
+        customerMap.putAll(Objects.requireNonNull(customers));
         return customerMap.toString();
     }
 
@@ -1,13 +1,18 @@
 package fr.univcotedazur.simpletcfs.cli.commands;
 
 import fr.univcotedazur.simpletcfs.cli.model.CliOrder;
+import fr.univcotedazur.simpletcfs.cli.model.CliOrderStatus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.Set;
 
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toSet;
 
 @ShellComponent
@@ -26,6 +31,7 @@ public class OrderTrackingCommands {
     public Set<CliOrder> orders() {
         return webClient.get()
                 .uri(BASE_URI)
+                .accept(MediaType.APPLICATION_NDJSON) // all orders, streamed (the JSON array is paginated)
                 .retrieve()
                 .bodyToFlux(CliOrder.class)
                 .collect(toSet())
@@ -41,4 +47,20 @@ public class OrderTrackingCommands {
                 .block();
     }
 
+    // the server pushes the status changes (Server-Sent Events) and ends the stream once the order is READY
+    @ShellMethod("Follow the order status until it is ready (order-follow ORDER_ID)")
+    public String orderFollow(Long id) {
+        return webClient.get()
+                .uri(BASE_URI + "/" + id + "/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<CliOrderStatus>>() {})
+                .mapNotNull(ServerSentEvent::data)
+                .map(CliOrderStatus::status)
+                .collectList()
+                .block()
+                .stream()
+                .collect(joining(" -> "));
+    }
+
 }
@@ -1,32 +1,52 @@
 package fr.univcotedazur.simpletcfs.cli.commands;
 
-import fr.univcotedazur.simpletcfs.cli.model.CookieEnum;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import java.util.Set;
 
-import static java.util.stream.Collectors.toSet;
-
 @ShellComponent
 public class RecipeCommands {
 
+    // a JSON array of recipe names (a Flux of String would emit the raw body, not the array elements)
+    private static final ParameterizedTypeReference<Set<String>> RECIPE_NAMES = new ParameterizedTypeReference<>() {};
+
     private final WebClient webClient;
 
+    // last catalog received and its ETag, reused when the backend answers 304 Not Modified
+    private Set<String> recipes;
+
+    private String recipesETag;
+
     @Autowired
     public RecipeCommands(WebClient webClient) {
         this.webClient = webClient;
     }
 
     @ShellMethod("List all available recipes")
-    public Set<CookieEnum> recipes() {
+    public Set<String> recipes() {
         return webClient.get()
                 .uri("/recipes")
-                .retrieve()
-                .bodyToFlux(CookieEnum.class)
-                .collect(toSet())
+                .headers(headers -> {
+                    if (recipesETag != null)
+                        headers.setIfNoneMatch(recipesETag); // conditional GET, no body if the catalog is unchanged
+                })
+                .exchangeToMono(response -> {
+                    if (response.statusCode() == HttpStatus.NOT_MODIFIED)
+                        return Mono.just(recipes);
+                    if (response.statusCode().isError())
+                        return response.createError();
+                    String eTag = response.headers().asHttpHeaders().getETag();
+                    return response.bodyToMono(RECIPE_NAMES).doOnNext(received -> {
+                        recipes = received;
+                        recipesETag = eTag;
+                    });
+                })
                 .block();
     }
 
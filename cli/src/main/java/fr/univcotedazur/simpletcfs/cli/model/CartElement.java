@@ -2,14 +2,14 @@ package fr.univcotedazur.simpletcfs.cli.model;
 
 public class CartElement {
 
-    private CookieEnum cookie;
+    private String cookie; // recipe name, the catalog being dynamic on the backend side
     private int quantity;
 
-    public CookieEnum getCookie() {
+    public String getCookie() {
         return cookie;
     }
 
-    public void setCookie(CookieEnum cookie) {
+    public void setCookie(String cookie) {
         this.cookie = cookie;
     }
 
@@ -24,14 +24,14 @@ public class CartElement {
     public CartElement() {
     }
 
-    public CartElement(CookieEnum cookie, int howMany) {
+    public CartElement(String cookie, int howMany) {
         this.cookie = cookie;
         this.quantity = howMany;
     }
 
     @Override
     public String toString() {
-        return quantity + "x" + cookie.toString();
+        return quantity + "x" + cookie;
     }
 
 }
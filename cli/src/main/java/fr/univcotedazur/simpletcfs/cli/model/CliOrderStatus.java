@@ -0,0 +1,7 @@
+package fr.univcotedazur.simpletcfs.cli.model;
+
+public record CliOrderStatus(
+   Long orderId,
+   Long customerId,
+   String status) {
+}
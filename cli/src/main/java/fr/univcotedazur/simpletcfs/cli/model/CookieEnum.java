@@ -1,11 +0,0 @@
-package fr.univcotedazur.simpletcfs.cli.model;
-
-public enum CookieEnum {
-
-    // On the client side, we only know cookies by their names...
-    // We could have built a different representation from the JSON array
-    // But this is a MVP...
-    // Note that the enum name is different!
-    CHOCOLALALA, DARK_TEMPTATION, SOO_CHOCOLATE;
-
-}
@@ -0,0 +1,54 @@
+package fr.univcotedazur.simpletcfs.cli.commands;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderTrackingCommandsTest {
+
+    private OrderTrackingCommands client;
+
+    private static MockWebServer mockWebServer;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+    }
+
+    @AfterAll
+    static void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @BeforeEach
+    void init() {
+        client = new OrderTrackingCommands(WebClient.create(mockWebServer.url("/").toString()));
+    }
+
+    @Test
+    void orderFollowTest() throws Exception {
+        // Given (the stream ends with the READY status)
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("event:status\ndata:{\"orderId\":1,\"customerId\":7,\"status\":\"IN_PROGRESS\"}\n\n" +
+                        "event:status\ndata:{\"orderId\":1,\"customerId\":7,\"status\":\"READY\"}\n\n")
+                .addHeader("Content-Type", "text/event-stream"));
+
+        // When-Then
+        assertEquals("IN_PROGRESS -> READY", client.orderFollow(1L));
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("/orders/1/events", recordedRequest.getPath());
+        assertEquals("text/event-stream", recordedRequest.getHeader("Accept"));
+    }
+
+}
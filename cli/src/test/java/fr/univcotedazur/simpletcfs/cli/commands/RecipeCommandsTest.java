@@ -1,6 +1,5 @@
 package fr.univcotedazur.simpletcfs.cli.commands;
 
-import fr.univcotedazur.simpletcfs.cli.model.CookieEnum;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -11,9 +10,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import java.io.IOException;
-import java.util.EnumSet;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 class RecipeCommandsTest {
 
@@ -45,7 +45,7 @@ class RecipeCommandsTest {
                 .addHeader("Content-Type", "application/json"));
 
         // When-Then
-        assertEquals(EnumSet.allOf(CookieEnum.class), client.recipes());
+        assertEquals(Set.of("CHOCOLALALA", "DARK_TEMPTATION", "SOO_CHOCOLATE"), client.recipes());
 
         // Verify the request was made to the correct endpoint
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
@@ -53,4 +53,22 @@ class RecipeCommandsTest {
         assertEquals("GET", recordedRequest.getMethod());
     }
 
+    @Test
+    void recipesConditionalGetTest() throws Exception {
+        // Given
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("[\"CHOCOLALALA\",\"DARK_TEMPTATION\"]")
+                .addHeader("Content-Type", "application/json")
+                .addHeader("ETag", "\"v1\""));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(304).addHeader("ETag", "\"v1\""));
+
+        // When-Then: the second call reuses the first catalog
+        assertEquals(Set.of("CHOCOLALALA", "DARK_TEMPTATION"), client.recipes());
+        assertEquals(Set.of("CHOCOLALALA", "DARK_TEMPTATION"), client.recipes());
+
+        // Verify the second request was conditional
+        assertNull(mockWebServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v1\"", mockWebServer.takeRequest().getHeader("If-None-Match"));
+    }
+
 }